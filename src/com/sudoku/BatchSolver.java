@@ -0,0 +1,583 @@
+package com.sudoku;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 1行1問(81文字、空白は0か.)のファイルを読み込み、順に解いて結果を書き出すバッチモード
+ * 81文字の後にタブで区切った項目(PuzzleGeneratorの難易度など)がある場合は無視する
+ * 16文字(4×4)、256文字(16×16)、625文字(25×25)の行はその大きさの問題として、441文字の行は
+ * 21×21の盤面に並べたサムライ数独(ConstraintModel.samurai 隙間のセルは0)として解く
+ * 10以上の数字はA(10)、B(11)…で表し(Geometry.toChar)、アルゴリズムの指定によらずGridSolverで解く
+ * 1行ずつ読み書きするので、ファイルの大きさに関わらず使用メモリは一定
+ *
+ * 出力は1問につき1行で、解(解けない場合は問題) 状態 処理時間(μs) と統計情報(SolverStats)を
+ * -f で指定した形式で書き出す tsv(既定値)とcsvはSolverStats.CSV_HEADERの順に区切り文字で並べ、
+ * csvの場合は先頭に見出しの行を付ける jsonは1行に1つのオブジェクトを書き出す
+ * 状態は solved / unsolvable / invalid / unknown のいずれか -u を指定した場合は解が2つ以上ある問題を multiple とする
+ * unknown は -n、-d で指定した1問あたりのノード数か時間(ms)の上限を超え、解があるかを判定できなかった問題で、
+ * 問題とそれまでの統計情報を書き出す -u の確認中に上限を超えた場合は solved のままにする
+ *
+ * 入力ファイルがPuzzleArchiveのバイナリ形式の場合は、割り当てたファイルから各ワーカーが直接問題を展開する
+ *
+ * 問題はCHUNK_SIZE行ずつワーカースレッドへ渡して並列に解く 各ワーカーは自分専用の
+ * ソルバーを使い回し、結果は入力と同じ順番で書き出す
+ *
+ * 使い方: java -cp Sudoku.jar com.sudoku.BatchSolver [-a algorithm] [-t スレッド数] [-f tsv|csv|json]
+ * [-u] [-r fixed|random|lcv] [-s シード] [-c 件数] [-n ノード数] [-d 制限時間(ms)]
+ * [-o 出力ファイル] [入力ファイル]
+ * 入力ファイルを省略するか - を指定した場合は標準入力から読む スレッド数の既定値はCPUのコア数
+ * -r と -s は候補の数字を試す順番と乱数のシード(SudokuSolver.setCandidateOrder) 1問ごとにシードから
+ * 始めるので、スレッド数に関わらず同じ結果になる
+ * -c を指定した場合は、その件数まで解を正規形で覚えるキャッシュ(SolutionCache)を全ワーカーで共有し、
+ * 行・列の入れ替えや数字の付け替えで同じになる問題はキャッシュから引く 統計情報は最初に解いた問題のものになる
+ */
+public final class BatchSolver {
+
+    public static final String SOLVED = "solved";
+    public static final String UNSOLVABLE = "unsolvable";
+    public static final String INVALID = "invalid";
+    public static final String MULTIPLE = "multiple";
+    public static final String UNKNOWN = "unknown";
+
+    // 出力形式
+    public static final String TSV = "tsv";
+    public static final String CSV = "csv";
+    public static final String JSON = "json";
+
+    // ワーカーへ一度に渡す行数
+    private static final int CHUNK_SIZE = 256;
+
+    // スレッドごとに処理中・書き出し待ちにしておけるチャンク数
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private BatchSolver() {
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        int algorithmNum = SudokuSolver.DANCING_LINKS;
+        String input = "-";
+        String output = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = TSV;
+        boolean checkUnique = false;
+        int orderPolicy = CandidateOrder.FIXED;
+        long seed = 0;
+        int cacheCapacity = 0;
+        long maxNodes = 0;
+        long timeoutMillis = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-a":
+                    algorithmNum = parseAlgorithm(args[++i]);
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-f":
+                    format = args[++i];
+                    if (!format.equals(TSV) && !format.equals(CSV) && !format.equals(JSON)) {
+                        throw new IllegalArgumentException("Unknown format: " + format);
+                    }
+                    break;
+                case "-u":
+                    checkUnique = true;
+                    break;
+                case "-r":
+                    orderPolicy = CandidateOrder.parsePolicy(args[++i]);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-c":
+                    cacheCapacity = Integer.parseInt(args[++i]);
+                    break;
+                case "-n":
+                    maxNodes = Long.parseLong(args[++i]);
+                    break;
+                case "-d":
+                    timeoutMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-o":
+                    output = args[++i];
+                    break;
+                default:
+                    if (args[i].startsWith("-") && !args[i].equals("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    input = args[i];
+                    break;
+            }
+        }
+
+        SolutionCache cache = cacheCapacity > 0 ? new SolutionCache(cacheCapacity) : null;
+        long start = System.nanoTime();
+        long[] counts;
+        Path path = input.equals("-") ? null : Paths.get(input);
+        if (path != null && PuzzleArchive.isArchive(path)) {
+            try (PuzzleArchive archive = PuzzleArchive.open(path);
+                    Writer out = new BufferedWriter(new OutputStreamWriter(
+                            output.equals("-") ? System.out : new FileOutputStream(output),
+                            StandardCharsets.US_ASCII), 1 << 16)) {
+                counts = run(archive, out, algorithmNum, threads, format, checkUnique,
+                        new CandidateOrder(orderPolicy, seed), cache,
+                        maxNodes, timeoutMillis * 1000000);
+            }
+        } else {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    path == null ? System.in : new FileInputStream(input),
+                    StandardCharsets.US_ASCII), 1 << 16);
+                    Writer out = new BufferedWriter(new OutputStreamWriter(
+                            output.equals("-") ? System.out : new FileOutputStream(output),
+                            StandardCharsets.US_ASCII), 1 << 16)) {
+                counts = run(in, out, algorithmNum, threads, format, checkUnique,
+                        new CandidateOrder(orderPolicy, seed), cache,
+                        maxNodes, timeoutMillis * 1000000);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long total = counts[0] + counts[1] + counts[2] + counts[3];
+        System.err.println("問題数：" + total + " (solved " + counts[0]
+                + ", unsolvable " + counts[1] + ", invalid " + counts[2]
+                + ", unknown " + counts[3] + ")");
+        if (cache != null) {
+            System.err.println("キャッシュ：" + cache.getHits() + "/"
+                    + (cache.getHits() + cache.getMisses()) + " hits");
+        }
+        System.err.println("処理時間：" + elapsed / 1000000 + "ms");
+        System.err.printf("処理速度：%.1f puzzles/s%n", total * 1e9 / Math.max(elapsed, 1));
+    }
+
+    /**
+     * 入力を最後まで読み、threads個のワーカーで解いて入力と同じ順に書き出す
+     * threadsが1以下の場合は呼び出し元のスレッドで解く
+     * checkUniqueがtrueの場合は、解けた問題の解が一意であるかも確かめる
+     * 各ワーカーはorderと同じ順番、同じシードを使う cacheがnullでない場合は全ワーカーで共有する
+     * maxNodes、timeoutNanosは1問あたりの探索ノード数と時間の上限(0の場合は上限なし)
+     *
+     * @return solved(multipleを含む), unsolvable, invalid, unknown それぞれの問題数
+     */
+    static long[] run(final BufferedReader in, Writer out, int algorithmNum, int threads,
+            String format, boolean checkUnique, CandidateOrder order, SolutionCache cache,
+            long maxNodes, long timeoutNanos) throws IOException {
+        return run(new Source() {
+            @Override
+            public Job next() throws IOException {
+                final String[] lines = readChunk(in);
+                if (lines == null) {
+                    return null;
+                }
+                return new Job() {
+                    @Override
+                    public StringBuilder solve(Worker worker, long[] counts) {
+                        return worker.solveChunk(lines, counts);
+                    }
+                };
+            }
+        }, out, algorithmNum, threads, format, checkUnique, order, cache,
+                maxNodes, timeoutNanos);
+    }
+
+    /**
+     * runと同じ 問題をバイナリ形式のファイルから読む
+     * ファイルの読み込みは行わず、各ワーカーが割り当てたファイルから自分のチャンクを直接展開する
+     */
+    static long[] run(final PuzzleArchive archive, Writer out, int algorithmNum, int threads,
+            String format, boolean checkUnique, CandidateOrder order, SolutionCache cache,
+            long maxNodes, long timeoutNanos) throws IOException {
+        return run(new Source() {
+            private long next;
+
+            @Override
+            public Job next() {
+                if (next >= archive.size()) {
+                    return null;
+                }
+                final long from = next;
+                final long to = Math.min(archive.size(), from + CHUNK_SIZE);
+                next = to;
+                return new Job() {
+                    @Override
+                    public StringBuilder solve(Worker worker, long[] counts) {
+                        return worker.solveRange(archive, from, to, counts);
+                    }
+                };
+            }
+        }, out, algorithmNum, threads, format, checkUnique, order, cache,
+                maxNodes, timeoutNanos);
+    }
+
+    private static long[] run(Source source, Writer out, int algorithmNum, int threads,
+            final String format, final boolean checkUnique, final CandidateOrder order,
+            final SolutionCache cache, final long maxNodes, final long timeoutNanos)
+            throws IOException {
+        long[] counts = new long[4];
+        if (format.equals(CSV)) {
+            out.append("solution,status,time_us,").append(SolverStats.CSV_HEADER).append('\n');
+        }
+
+        if (threads <= 1) {
+            Worker worker = new Worker(algorithmNum, format, checkUnique, order, cache,
+                    maxNodes, timeoutNanos);
+            Job job;
+            while ((job = source.next()) != null) {
+                out.append(job.solve(worker, counts));
+            }
+            return counts;
+        }
+
+        final int algorithm = algorithmNum;
+        final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker(algorithm, format, checkUnique, order, cache,
+                        maxNodes, timeoutNanos);
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        try {
+            Job job;
+            while ((job = source.next()) != null) {
+                final Job chunk = job;
+                pending.add(pool.submit(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() {
+                        Chunk result = new Chunk();
+                        result.text = chunk.solve(workers.get(), result.counts);
+                        return result;
+                    }
+                }));
+                // 書き出し待ちが溜まりすぎないよう、先頭のチャンクから順に書き出す
+                if (pending.size() >= threads * CHUNKS_PER_THREAD) {
+                    write(pending.poll(), out, counts);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out, counts);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    /**
+     * チャンクの処理が終わるのを待って書き出し、問題数を集計する
+     */
+    private static void write(Future<Chunk> future, Writer out, long[] counts)
+            throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        out.append(chunk.text);
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += chunk.counts[i];
+        }
+    }
+
+    /**
+     * 空行を除いて最大CHUNK_SIZE行を読む 入力の終わりに達した場合null
+     */
+    private static String[] readChunk(BufferedReader in) throws IOException {
+        String[] lines = new String[CHUNK_SIZE];
+        int n = 0;
+        String str;
+        while (n < CHUNK_SIZE && (str = in.readLine()) != null) {
+            str = str.trim();
+            if (!str.isEmpty()) {
+                lines[n++] = str;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        return n == CHUNK_SIZE ? lines : Arrays.copyOf(lines, n);
+    }
+
+    /**
+     * 入力をチャンクに分けて渡す
+     */
+    private interface Source {
+
+        /**
+         * 次のチャンク 入力の終わりに達した場合null
+         */
+        Job next() throws IOException;
+    }
+
+    /**
+     * 1チャンク分の問題を解く処理
+     */
+    private interface Job {
+
+        StringBuilder solve(Worker worker, long[] counts);
+    }
+
+    /**
+     * 1チャンク分の出力と問題数
+     */
+    private static final class Chunk {
+
+        private StringBuilder text;
+        private final long[] counts = new long[4];
+    }
+
+    /**
+     * スレッドごとに使い回すソルバーと作業用配列
+     */
+    private static final class Worker {
+
+        private final SudokuSolver solver = new SudokuSolver();
+        private final BitBoard board = new BitBoard();
+        // 盤面の幅ごとの問題の盤面 初めてその大きさの問題を読んだときに作る
+        private final int[][][] grids = new int[Geometry.MAX_BOX * Geometry.MAX_BOX + 1][][];
+        private final StringBuilder field = new StringBuilder(96);
+        // 形式が正しくない問題に付ける、全て0の統計情報
+        private final SolverStats noStats = new SolverStats();
+        private final int algorithmNum;
+        private final String format;
+        private final boolean checkUnique;
+        // 1問あたりのノード数と時間の上限 0の場合は上限なし
+        private final long maxNodes;
+        private final long timeoutNanos;
+
+        private Worker(int algorithmNum, String format, boolean checkUnique,
+                CandidateOrder order, SolutionCache cache, long maxNodes, long timeoutNanos) {
+            this.algorithmNum = algorithmNum;
+            this.format = format;
+            this.checkUnique = checkUnique;
+            this.maxNodes = maxNodes;
+            this.timeoutNanos = timeoutNanos;
+            solver.setCandidateOrder(order.getPolicy(), order.getSeed());
+            solver.setCache(cache);
+        }
+
+        /**
+         * チャンク内の問題を順に解き、出力をまとめて返す
+         */
+        private StringBuilder solveChunk(String[] lines, long[] counts) {
+            StringBuilder text = new StringBuilder(lines.length * 160);
+            for (String str : lines) {
+                field.setLength(0);
+                int[][] grid = gridFor(str);
+                if (grid == null || !parse(str, grid) || !isConsistent(grid)) {
+                    field.append(str);
+                    appendRecord(text, INVALID, 0, noStats);
+                    counts[2]++;
+                } else {
+                    solve(grid, text, counts);
+                }
+            }
+            return text;
+        }
+
+        /**
+         * バイナリ形式のファイルのfrom番目からto番目の手前までの問題を順に解き、出力をまとめて返す
+         */
+        private StringBuilder solveRange(PuzzleArchive archive, long from, long to,
+                long[] counts) {
+            StringBuilder text = new StringBuilder((int) (to - from) * 160);
+            int[][] grid = grid(Geometry.of(3));
+            for (long i = from; i < to; i++) {
+                field.setLength(0);
+                if (!archive.get(i, grid) || !board.load(grid)) {
+                    archive.format(i, field);
+                    appendRecord(text, INVALID, 0, noStats);
+                    counts[2]++;
+                } else {
+                    solve(grid, text, counts);
+                }
+            }
+            return text;
+        }
+
+        /**
+         * 行の長さ(タブの手前まで)に合う大きさの盤面 扱えない長さの場合null
+         */
+        private int[][] gridFor(String str) {
+            int tab = str.indexOf('\t');
+            Geometry geometry = Geometry.ofCells(tab < 0 ? str.length() : tab);
+            return geometry == null ? null : grid(geometry);
+        }
+
+        private int[][] grid(Geometry geometry) {
+            if (grids[geometry.width] == null) {
+                grids[geometry.width] = new int[geometry.height][geometry.width];
+            }
+            return grids[geometry.width];
+        }
+
+        /**
+         * 問題の数字同士が矛盾していないか 9×9はBitBoardへ読み込んで確かめる
+         */
+        private boolean isConsistent(int[][] grid) {
+            if (grid.length == 9) {
+                return board.load(grid);
+            }
+            return Geometry.ofWidth(grid.length).isConsistent(grid);
+        }
+
+        /**
+         * gridへ読み込んだ、数字同士が矛盾していない問題を解き、出力をtextへ追加する
+         */
+        private void solve(int[][] grid, StringBuilder text, long[] counts) {
+            long start = System.nanoTime();
+            SolveMonitor monitor = maxNodes > 0 || timeoutNanos > 0
+                    ? new SolveMonitor(maxNodes, timeoutNanos) : null;
+            SolveResult result = solver.solve(grid, algorithmNum, monitor);
+            long micros = (System.nanoTime() - start) / 1000;
+
+            String status;
+            int count;
+            if (result.isSolved()) {
+                status = SOLVED;
+                count = 0;
+                // 2つ目の解が見つかった時点で打ち切る 上限は解いたときと合わせて数える
+                if (checkUnique && solver.countSolutions(grid, 2, monitor) > 1) {
+                    status = MULTIPLE;
+                }
+            } else if (result.getStatus() == SolveResult.Status.BUDGET_EXHAUSTED) {
+                status = UNKNOWN;
+                count = 3;
+            } else {
+                status = UNSOLVABLE;
+                count = 1;
+            }
+
+            format(result.isSolved() ? result.getSolution() : grid, field);
+            appendRecord(text, status, micros, result.getStats());
+            counts[count]++;
+        }
+
+        /**
+         * fieldに入れた盤面と状態、処理時間、統計情報を1行としてtextへ追加する
+         */
+        private void appendRecord(StringBuilder text, String status, long micros,
+                SolverStats stats) {
+            if (format.equals(JSON)) {
+                text.append("{\"solution\":\"");
+                for (int i = 0; i < field.length(); i++) {
+                    char c = field.charAt(i);
+                    if (c == '"' || c == '\\') {
+                        text.append('\\').append(c);
+                    } else if (c < ' ') {
+                        text.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        text.append(c);
+                    }
+                }
+                text.append("\",\"status\":\"").append(status)
+                        .append("\",\"time_us\":").append(micros)
+                        .append(",\"stats\":");
+                stats.appendJson(text).append("}\n");
+            } else {
+                char separator = format.equals(CSV) ? ',' : '\t';
+                if (format.equals(CSV) && (indexOf(field, ',') >= 0 || indexOf(field, '"') >= 0)) {
+                    text.append('"');
+                    for (int i = 0; i < field.length(); i++) {
+                        char c = field.charAt(i);
+                        text.append(c == '"' ? "\"\"" : String.valueOf(c));
+                    }
+                    text.append('"');
+                } else {
+                    text.append(field);
+                }
+                text.append(separator).append(status)
+                        .append(separator).append(micros).append(separator);
+                stats.appendCsv(text, separator).append('\n');
+            }
+        }
+
+        private static int indexOf(CharSequence str, char c) {
+            for (int i = 0; i < str.length(); i++) {
+                if (str.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 1辺がgrid.lengthの問題(9×9なら81文字)をgridへ読み込む 0と.は空白として扱う
+     * 続く文字がタブの場合、それ以降は無視する
+     *
+     * @return 形式が正しくない場合false
+     */
+    static boolean parse(CharSequence str, int[][] grid) {
+        int size = grid.length;
+        int cells = size * size;
+        if (str.length() != cells && !(str.length() > cells && str.charAt(cells) == '\t')) {
+            return false;
+        }
+        for (int i = 0; i < cells; i++) {
+            int value = Geometry.fromChar(str.charAt(i));
+            if (value < 0 || value > size) {
+                return false;
+            }
+            grid[i / size][i % size] = value;
+        }
+        return true;
+    }
+
+    /**
+     * 盤面を1セル1文字(9×9なら81文字)でbufへ追加する 空白は0
+     */
+    static void format(int[][] grid, StringBuilder buf) {
+        for (int[] row : grid) {
+            for (int value : row) {
+                buf.append(Geometry.toChar(value));
+            }
+        }
+    }
+
+    /**
+     * アルゴリズム名を番号へ変換する
+     */
+    static int parseAlgorithm(String name) {
+        switch (name.toLowerCase()) {
+            case "backtrack":
+                return SudokuSolver.BACK_TRACK;
+            case "advanced":
+                return SudokuSolver.ADVANCED;
+            case "myalgorithm":
+                return SudokuSolver.MY_ALGORITHM;
+            case "dancinglinks":
+                return SudokuSolver.DANCING_LINKS;
+            case "parallel":
+                return SudokuSolver.PARALLEL;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + name);
+        }
+    }
+}
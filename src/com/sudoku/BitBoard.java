@@ -0,0 +1,283 @@
+package com.sudoku;
+
+/**
+ * ビットマスクで候補を管理する盤面
+ * セルごとに9ビットの候補マスク、行・列・ボックスごとに使用済みマスクを持つ
+ * (ビットkが数字k+1に対応する) 変更は事前確保したトレイルへ記録し、mark/rollbackで元に戻す
+ * 候補が変化したセルと、そのセルの属するユニットを推論待ちとして記録する
+ */
+final class BitBoard {
+
+    // 全ての数字が候補である状態
+    static final int ALL = 0x1FF;
+
+    // セル番号(row * 9 + col)から行、列、ボックス番号を引く表
+    static final int[] ROW = new int[81];
+    static final int[] COL = new int[81];
+    static final int[] BOX = new int[81];
+
+    // 各セルと同じ行、列、ボックスに属する20個のセル
+    static final int[][] PEERS = new int[81][20];
+
+    // 27個のユニットに属するセル 0〜8が行、9〜17が列、18〜26がボックス
+    static final int[][] UNITS = new int[27][9];
+
+    // 各セルが属する3つのユニットのビット(ユニット番号のビット)
+    static final int[] UNIT_BITS = new int[81];
+
+    // 全てのユニットのビット
+    static final int ALL_UNITS = (1 << 27) - 1;
+
+    static {
+        for (int cell = 0; cell < 81; cell++) {
+            ROW[cell] = cell / 9;
+            COL[cell] = cell % 9;
+            BOX[cell] = ROW[cell] / 3 * 3 + COL[cell] / 3;
+            UNIT_BITS[cell] = 1 << ROW[cell] | 1 << (9 + COL[cell]) | 1 << (18 + BOX[cell]);
+        }
+        int[] filled = new int[27];
+        for (int cell = 0; cell < 81; cell++) {
+            UNITS[ROW[cell]][filled[ROW[cell]]++] = cell;
+            UNITS[9 + COL[cell]][filled[9 + COL[cell]]++] = cell;
+            UNITS[18 + BOX[cell]][filled[18 + BOX[cell]]++] = cell;
+        }
+        for (int cell = 0; cell < 81; cell++) {
+            int n = 0;
+            for (int other = 0; other < 81; other++) {
+                if (other != cell && (ROW[other] == ROW[cell]
+                        || COL[other] == COL[cell] || BOX[other] == BOX[cell])) {
+                    PEERS[cell][n++] = other;
+                }
+            }
+        }
+    }
+
+    // セルの値(空白は0)
+    final int[] values = new int[81];
+
+    // 空白セルに入る可能性のある数字のマスク 値が入っているセルでは無効
+    final int[] candidates = new int[81];
+
+    // 行、列、ボックスで既に使われている数字のマスク
+    final int[] rowUsed = new int[9];
+    final int[] colUsed = new int[9];
+    final int[] boxUsed = new int[9];
+
+    // 変更履歴 (変更前の候補マスク << 8) | cell が候補の変更、PLACEDを立てた要素は値の代入を表す
+    // 候補の変更は1回で1つ以上の候補を消すので最大81*9回、代入は最大81回で、これ以上伸びることはない
+    private final int[] trail = new int[81 * 10];
+    private int trailSize;
+
+    // 値の代入を表す履歴のフラグ
+    private static final int PLACED = 1 << 7;
+
+    // 推論待ちのセル(候補が変化したセル)のキューと、キューに入っているかのフラグ
+    private final int[] pendingCells = new int[81];
+    private final boolean[] pending = new boolean[81];
+    private int pendingSize;
+
+    // hidden singleと、pair・triple・intersectionをまだ調べていないユニットのビット
+    int singleUnits;
+    int subsetUnits;
+
+    // 空白セルの候補がなくなった(盤面が矛盾した)
+    boolean failed;
+
+    /**
+     * 問題を読み込み候補を初期化する
+     *
+     * @return 問題の数字同士が矛盾している場合false
+     */
+    boolean load(int[][] problem) {
+        trailSize = 0;
+        clearPending();
+        for (int i = 0; i < 9; i++) {
+            rowUsed[i] = 0;
+            colUsed[i] = 0;
+            boxUsed[i] = 0;
+        }
+
+        boolean valid = true;
+        for (int cell = 0; cell < 81; cell++) {
+            int value = problem[ROW[cell]][COL[cell]];
+            values[cell] = value;
+            if (value != 0) {
+                int bit = 1 << (value - 1);
+                if (((rowUsed[ROW[cell]] | colUsed[COL[cell]] | boxUsed[BOX[cell]]) & bit) != 0) {
+                    valid = false;
+                }
+                rowUsed[ROW[cell]] |= bit;
+                colUsed[COL[cell]] |= bit;
+                boxUsed[BOX[cell]] |= bit;
+            }
+        }
+        for (int cell = 0; cell < 81; cell++) {
+            candidates[cell] = values[cell] != 0 ? 0
+                    : ALL & ~(rowUsed[ROW[cell]] | colUsed[COL[cell]] | boxUsed[BOX[cell]]);
+            if (values[cell] == 0) {
+                touch(cell);
+            }
+        }
+        singleUnits = ALL_UNITS;
+        subsetUnits = ALL_UNITS;
+        return valid;
+    }
+
+    /**
+     * 他の盤面の状態を写す トレイルは空になり、推論待ちのセルとユニットは引き継ぐ
+     */
+    void copyFrom(BitBoard other) {
+        trailSize = 0;
+        clearPending();
+        for (int i = 0; i < other.pendingSize; i++) {
+            touch(other.pendingCells[i]);
+        }
+        singleUnits = other.singleUnits;
+        subsetUnits = other.subsetUnits;
+        failed = other.failed;
+        System.arraycopy(other.values, 0, values, 0, 81);
+        System.arraycopy(other.candidates, 0, candidates, 0, 81);
+        System.arraycopy(other.rowUsed, 0, rowUsed, 0, 9);
+        System.arraycopy(other.colUsed, 0, colUsed, 0, 9);
+        System.arraycopy(other.boxUsed, 0, boxUsed, 0, 9);
+    }
+
+    /**
+     * 現在の盤面を配列へ書き出す
+     */
+    void copyTo(int[][] grid) {
+        for (int cell = 0; cell < 81; cell++) {
+            grid[ROW[cell]][COL[cell]] = values[cell];
+        }
+    }
+
+    /**
+     * セルへ数字を入れ、同じ行、列、ボックスの空白セルから候補を削除する
+     */
+    void place(int cell, int value) {
+        int bit = 1 << (value - 1);
+        values[cell] = value;
+        rowUsed[ROW[cell]] |= bit;
+        colUsed[COL[cell]] |= bit;
+        boxUsed[BOX[cell]] |= bit;
+        trail[trailSize++] = cell | PLACED;
+
+        // touchと同じ処理 ユニットのビットはまとめて反映する
+        int units = 0;
+        int[] peers = PEERS[cell];
+        for (int i = 0; i < 20; i++) {
+            int peer = peers[i];
+            int mask = candidates[peer];
+            if (values[peer] == 0 && (mask & bit) != 0) {
+                trail[trailSize++] = mask << 8 | peer;
+                candidates[peer] = mask & ~bit;
+                if (mask == bit) {
+                    failed = true;
+                }
+                if (!pending[peer]) {
+                    pending[peer] = true;
+                    pendingCells[pendingSize++] = peer;
+                }
+                units |= UNIT_BITS[peer];
+            }
+        }
+        // 数字の入る場所が減るので、セルの属するユニットはhidden singleを調べ直す
+        singleUnits |= UNIT_BITS[cell] | units;
+        subsetUnits |= units;
+    }
+
+    /**
+     * 空白セルの候補からmaskの数字を削除する
+     *
+     * @return 候補が1つ以上削除された場合true
+     */
+    boolean eliminate(int cell, int mask) {
+        int removed = candidates[cell] & mask;
+        if (removed == 0) {
+            return false;
+        }
+        trail[trailSize++] = candidates[cell] << 8 | cell;
+        candidates[cell] &= ~removed;
+        touch(cell);
+        return true;
+    }
+
+    /**
+     * 候補が変化したセルを推論待ちにする 候補がなくなった場合は矛盾として記録する
+     */
+    private void touch(int cell) {
+        if (candidates[cell] == 0) {
+            failed = true;
+        }
+        if (!pending[cell]) {
+            pending[cell] = true;
+            pendingCells[pendingSize++] = cell;
+        }
+        singleUnits |= UNIT_BITS[cell];
+        subsetUnits |= UNIT_BITS[cell];
+    }
+
+    /**
+     * 推論待ちのセルを1つ取り出す ない場合は-1
+     */
+    int pollPending() {
+        if (pendingSize == 0) {
+            return -1;
+        }
+        int cell = pendingCells[--pendingSize];
+        pending[cell] = false;
+        return cell;
+    }
+
+    /**
+     * 推論待ちのセルとユニット、矛盾の記録を消す
+     */
+    private void clearPending() {
+        while (pendingSize > 0) {
+            pending[pendingCells[--pendingSize]] = false;
+        }
+        singleUnits = 0;
+        subsetUnits = 0;
+        failed = false;
+    }
+
+    /**
+     * ユニットで既に使われている数字のマスク
+     */
+    int usedMask(int unit) {
+        if (unit < 9) {
+            return rowUsed[unit];
+        } else if (unit < 18) {
+            return colUsed[unit - 9];
+        }
+        return boxUsed[unit - 18];
+    }
+
+    /**
+     * 現在のトレイルの位置を返す rollbackへ渡すと、この時点の盤面に戻る
+     */
+    int mark() {
+        return trailSize;
+    }
+
+    /**
+     * markの時点まで変更を取り消す 候補は記録した変更前のマスクを書き戻すだけで、
+     * オブジェクトの生成や候補の並べ替えは行わない 推論待ちの記録は取り消した変更のものなので消す
+     */
+    void rollback(int mark) {
+        clearPending();
+        while (trailSize > mark) {
+            int entry = trail[--trailSize];
+            int cell = entry & 0x7F;
+            if ((entry & PLACED) == 0) {
+                candidates[cell] = entry >>> 8;
+            } else {
+                int bit = ~(1 << (values[cell] - 1));
+                rowUsed[ROW[cell]] &= bit;
+                colUsed[COL[cell]] &= bit;
+                boxUsed[BOX[cell]] &= bit;
+                values[cell] = 0;
+            }
+        }
+    }
+}
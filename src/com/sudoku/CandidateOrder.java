@@ -0,0 +1,144 @@
+package com.sudoku;
+
+/**
+ * 分岐したセルで候補の数字を試す順番を決める
+ * 固定順(小さい順)、シード付きの擬似乱数順、least-constraining value(周りの候補を減らさない順)から選ぶ
+ * 乱数はインスタンスごとに持つxorshiftで、同じシードからは同じ順番になる
+ * 作業用配列を使い回すので、1つのインスタンスを複数のスレッドで使わないこと
+ */
+public final class CandidateOrder {
+
+    // 小さい数字から試す
+    public static final int FIXED = 0;
+    // シードから決まる擬似乱数の順に試す
+    public static final int RANDOM = 1;
+    // 同じ行、列、ボックスの空白セルで候補になっている数が少ない数字から試す
+    public static final int LEAST_CONSTRAINING = 2;
+
+    private final int policy;
+    private final long seed;
+
+    // xorshift64の状態 0にはならない
+    private long state;
+
+    // 数字ごとの、周りの空白セルで候補になっている数
+    private final int[] scores = new int[9];
+
+    public CandidateOrder() {
+        this(FIXED, 0);
+    }
+
+    public CandidateOrder(int policy, long seed) {
+        if (policy < FIXED || policy > LEAST_CONSTRAINING) {
+            throw new IllegalArgumentException("Unknown candidate order: " + policy);
+        }
+        this.policy = policy;
+        this.seed = seed;
+        reset();
+    }
+
+    public int getPolicy() {
+        return policy;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * 乱数をシードの状態に戻す 1問解くたびに呼び、結果が前の問題やスレッドに左右されないようにする
+     */
+    void reset() {
+        // 0を避けるため、シードをsplitmix64で混ぜてから使う
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        state = z != 0 ? z : 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * least-constraining valueの場合のみ、周りのセルの候補を必要とする
+     */
+    boolean needsPeers() {
+        return policy == LEAST_CONSTRAINING;
+    }
+
+    /**
+     * maskの数字を試す順にdigitsへ書き出す
+     *
+     * @param mask 候補のマスク(ビットkが数字k+1)
+     * @param peerMasks 同じ行、列、ボックスの空白セルの候補マスク(needsPeersがfalseの場合は使わない)
+     * @param peerCount peerMasksの個数
+     * @param digits 書き出し先 9個以上の長さが必要
+     * @return 書き出した数字の個数
+     */
+    int order(int mask, int[] peerMasks, int peerCount, int[] digits) {
+        int n = 0;
+        while (mask != 0) {
+            digits[n++] = Integer.numberOfTrailingZeros(mask) + 1;
+            mask &= mask - 1;
+        }
+
+        if (policy == RANDOM) {
+            // Fisher-Yates
+            for (int i = n - 1; i > 0; i--) {
+                int j = nextInt(i + 1);
+                int tmp = digits[i];
+                digits[i] = digits[j];
+                digits[j] = tmp;
+            }
+        } else if (policy == LEAST_CONSTRAINING) {
+            for (int i = 0; i < n; i++) {
+                int bit = 1 << (digits[i] - 1);
+                int score = 0;
+                for (int p = 0; p < peerCount; p++) {
+                    if ((peerMasks[p] & bit) != 0) {
+                        score++;
+                    }
+                }
+                scores[i] = score;
+            }
+            // 挿入ソート 同じ数の場合は小さい数字を先にする
+            for (int i = 1; i < n; i++) {
+                int digit = digits[i];
+                int score = scores[i];
+                int j = i - 1;
+                while (j >= 0 && scores[j] > score) {
+                    digits[j + 1] = digits[j];
+                    scores[j + 1] = scores[j];
+                    j--;
+                }
+                digits[j + 1] = digit;
+                scores[j + 1] = score;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 0以上bound未満の擬似乱数
+     */
+    int nextInt(int bound) {
+        state ^= state << 13;
+        state ^= state >>> 7;
+        state ^= state << 17;
+        return (int) (((state >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * 名前から順番の番号へ変換する
+     */
+    static int parsePolicy(String name) {
+        switch (name.toLowerCase()) {
+            case "fixed":
+                return FIXED;
+            case "random":
+                return RANDOM;
+            case "lcv":
+                return LEAST_CONSTRAINING;
+            default:
+                throw new IllegalArgumentException("Unknown candidate order: " + name);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.sudoku;
+
+/**
+ * 問題を、同じ解き方になる問題の中で最小のもの(正規形)へ変換する
+ * 解の構造を変えない変換は、転置、バンド(3行の組)・スタック(3列の組)の入れ替え、
+ * バンド内の行・スタック内の列の入れ替え、数字の付け替えで、数字の付け替えを除くと
+ * 2 × 6^8 = 3,359,232通りある
+ *
+ * 盤面の大小は、まず数字の入っているセルの位置(空白を小さいとする)を行ごとに比べ、
+ * 同じ場合は数字を最初に現れた順に1から付け替えた値を先頭のセルから比べる
+ * 位置だけの比較では、列の並べ方を決めれば行の並べ方はバンド内の行とバンドを整列するだけで決まるので、
+ * 2 × 1296通りを調べればよい 位置が最小になる並べ方が複数ある場合は、それぞれ数字を比べる
+ * 空白の多い盤面や全て埋まった盤面のように、位置が最小になる並べ方がTRANSFORM_LIMITを超える場合は諦める
+ *
+ * 作業用配列を使い回すので、1つのインスタンスを複数のスレッドで使わないこと
+ */
+public final class Canonicalizer {
+
+    // 数字を比べる並べ方の上限
+    private static final int TRANSFORM_LIMIT = 10000;
+
+    // 3要素の並べ方 新しい位置jには元の位置PERMS[p][j]を置く
+    private static final int[][] PERMS = {
+        {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    // 3列分の位置のマスク(列kがビット2-k)をPERMS[p]で並べ替えたもの
+    private static final int[][] PERM3 = new int[6][8];
+
+    static {
+        for (int p = 0; p < 6; p++) {
+            for (int x = 0; x < 8; x++) {
+                int y = 0;
+                for (int j = 0; j < 3; j++) {
+                    if ((x & (1 << (2 - PERMS[p][j]))) != 0) {
+                        y |= 1 << (2 - j);
+                    }
+                }
+                PERM3[p][x] = y;
+            }
+        }
+    }
+
+    // 向き(0: そのまま、1: 転置)ごとの盤面
+    private final int[][] values = new int[2][81];
+    // 向き、行、スタック、スタック内の並べ方ごとの、並べ替えた3列分の位置のマスク
+    private final int[][][][] chunks = new int[2][9][3][6];
+
+    // 位置が最小になる並べ方(向き、スタックの並べ方、各スタック内の並べ方)
+    private final int[] ties = new int[TRANSFORM_LIMIT];
+    private int tieCount;
+
+    // 作業用 行ごとの位置のマスクと、バンドごとに整列した3行
+    private final int[] masks = new int[9];
+    private final int[] bandKeys = new int[3];
+    // 作業用 各スタック内の列の並べ方と、整列した順になるバンド・バンド内の行の並べ方
+    private final int[] within = new int[3];
+    private final int[] bandPerms = new int[6];
+    private final int[][] rowPerms = new int[3][6];
+    private final int[] rowPermCounts = new int[3];
+    private final int[] rowOrder = new int[9];
+    private final int[] colOrder = new int[9];
+    private final int[] candidate = new int[81];
+    private final int[] labels = new int[10];
+
+    // 見つけた正規形と、元の盤面からの変換
+    private final int[] best = new int[81];
+    private int bestTranspose;
+    private final int[] bestRows = new int[9];
+    private final int[] bestCols = new int[9];
+    // 元の数字から正規形の数字への対応と、その逆 問題にない数字も残りの数字へ小さい順に対応させる
+    private final int[] map = new int[10];
+    private final int[] inverse = new int[10];
+
+    /**
+     * 正規形を求める 求めた正規形と変換はgetKey、toCanonical、fromCanonicalで使う
+     *
+     * @param grid 盤面(空白は0)
+     * @return 変換の候補が多すぎて諦めた場合false
+     */
+    public boolean canonicalize(int[][] grid) {
+        for (int r = 0; r < 9; r++) {
+            for (int c = 0; c < 9; c++) {
+                values[0][r * 9 + c] = grid[r][c];
+                values[1][c * 9 + r] = grid[r][c];
+            }
+        }
+        for (int t = 0; t < 2; t++) {
+            for (int r = 0; r < 9; r++) {
+                int mask = 0;
+                for (int c = 0; c < 9; c++) {
+                    if (values[t][r * 9 + c] != 0) {
+                        mask |= 1 << (8 - c);
+                    }
+                }
+                for (int s = 0; s < 3; s++) {
+                    int chunk = (mask >> (6 - 3 * s)) & 7;
+                    for (int p = 0; p < 6; p++) {
+                        chunks[t][r][s][p] = PERM3[p][chunk];
+                    }
+                }
+            }
+        }
+
+        if (!findPatternTies()) {
+            return false;
+        }
+
+        // 位置が最小になる並べ方ごとに、行の並べ方を全て試して数字を比べる
+        boolean found = false;
+        int transforms = 0;
+        for (int i = 0; i < tieCount; i++) {
+            int tie = ties[i];
+            int t = tie >> 12;
+            int[] stacks = PERMS[(tie >> 9) & 7];
+            within[0] = (tie >> 6) & 7;
+            within[1] = (tie >> 3) & 7;
+            within[2] = tie & 7;
+            patternKeys(t, stacks, within);
+            for (int s = 0; s < 3; s++) {
+                for (int j = 0; j < 3; j++) {
+                    colOrder[3 * s + j] = 3 * stacks[s] + PERMS[within[stacks[s]]][j];
+                }
+            }
+
+            // バンド内の行、バンドを整列した順になる並べ方
+            int bandPermCount = 0;
+            for (int q = 0; q < 6; q++) {
+                int[] perm = PERMS[q];
+                if (bandKeys[perm[0]] <= bandKeys[perm[1]] && bandKeys[perm[1]] <= bandKeys[perm[2]]) {
+                    bandPerms[bandPermCount++] = q;
+                }
+            }
+            int count = bandPermCount;
+            for (int b = 0; b < 3; b++) {
+                rowPermCounts[b] = 0;
+                for (int q = 0; q < 6; q++) {
+                    int[] perm = PERMS[q];
+                    if (masks[3 * b + perm[0]] <= masks[3 * b + perm[1]]
+                            && masks[3 * b + perm[1]] <= masks[3 * b + perm[2]]) {
+                        rowPerms[b][rowPermCounts[b]++] = q;
+                    }
+                }
+                count *= rowPermCounts[b];
+            }
+            transforms += count;
+            if (transforms > TRANSFORM_LIMIT) {
+                return false;
+            }
+
+            for (int bq = 0; bq < bandPermCount; bq++) {
+                int[] bands = PERMS[bandPerms[bq]];
+                for (int p0 = 0; p0 < rowPermCounts[bands[0]]; p0++) {
+                    for (int p1 = 0; p1 < rowPermCounts[bands[1]]; p1++) {
+                        for (int p2 = 0; p2 < rowPermCounts[bands[2]]; p2++) {
+                            setRows(0, bands[0], rowPerms[bands[0]][p0]);
+                            setRows(1, bands[1], rowPerms[bands[1]][p1]);
+                            setRows(2, bands[2], rowPerms[bands[2]][p2]);
+                            if (compareDigits(t, found)) {
+                                found = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // 問題にない数字を、残りの数字へ小さい順に対応させる
+        int next = 1;
+        for (int v = 1; v <= 9; v++) {
+            if (map[v] != 0) {
+                next = Math.max(next, map[v] + 1);
+            }
+        }
+        for (int v = 1; v <= 9; v++) {
+            if (map[v] == 0) {
+                map[v] = next++;
+            }
+            inverse[map[v]] = v;
+        }
+        return true;
+    }
+
+    /**
+     * 全ての列の並べ方について位置を比べ、最小になる並べ方をtiesへ集める
+     *
+     * @return 最小になる並べ方がTRANSFORM_LIMITを超えた場合false
+     */
+    private boolean findPatternTies() {
+        int best0 = Integer.MAX_VALUE;
+        int best1 = Integer.MAX_VALUE;
+        int best2 = Integer.MAX_VALUE;
+        boolean overflow = false;
+        tieCount = 0;
+        for (int t = 0; t < 2; t++) {
+            for (int sp = 0; sp < 6; sp++) {
+                int[] stacks = PERMS[sp];
+                for (int w = 0; w < 216; w++) {
+                    within[0] = w / 36;
+                    within[1] = w / 6 % 6;
+                    within[2] = w % 6;
+                    patternKeys(t, stacks, within);
+
+                    // バンドを整列する
+                    int k0 = bandKeys[0];
+                    int k1 = bandKeys[1];
+                    int k2 = bandKeys[2];
+                    int tmp;
+                    if (k0 > k1) {
+                        tmp = k0;
+                        k0 = k1;
+                        k1 = tmp;
+                    }
+                    if (k1 > k2) {
+                        tmp = k1;
+                        k1 = k2;
+                        k2 = tmp;
+                    }
+                    if (k0 > k1) {
+                        tmp = k0;
+                        k0 = k1;
+                        k1 = tmp;
+                    }
+
+                    int cmp = k0 != best0 ? Integer.compare(k0, best0)
+                            : k1 != best1 ? Integer.compare(k1, best1) : Integer.compare(k2, best2);
+                    if (cmp < 0) {
+                        best0 = k0;
+                        best1 = k1;
+                        best2 = k2;
+                        tieCount = 0;
+                        overflow = false;
+                    }
+                    if (cmp <= 0) {
+                        if (tieCount == TRANSFORM_LIMIT) {
+                            overflow = true;
+                        } else {
+                            ties[tieCount++] = t << 12 | sp << 9 | within[0] << 6 | within[1] << 3 | within[2];
+                        }
+                    }
+                }
+            }
+        }
+        return !overflow;
+    }
+
+    /**
+     * 向きtの盤面の列を並べ替え、行ごとの位置のマスクをmasksへ、
+     * バンドごとに3行を整列して並べた値をbandKeysへ書き出す
+     *
+     * @param stacks 新しいスタックsには元のスタックstacks[s]を置く
+     * @param within 元のスタックsの中の列の並べ方
+     */
+    private void patternKeys(int t, int[] stacks, int[] within) {
+        int s0 = stacks[0];
+        int s1 = stacks[1];
+        int s2 = stacks[2];
+        int w0 = within[s0];
+        int w1 = within[s1];
+        int w2 = within[s2];
+        int[][][] rows = chunks[t];
+        for (int r = 0; r < 9; r++) {
+            int[][] row = rows[r];
+            masks[r] = row[s0][w0] << 6 | row[s1][w1] << 3 | row[s2][w2];
+        }
+        for (int b = 0; b < 3; b++) {
+            int a = masks[3 * b];
+            int m = masks[3 * b + 1];
+            int c = masks[3 * b + 2];
+            int tmp;
+            if (a > m) {
+                tmp = a;
+                a = m;
+                m = tmp;
+            }
+            if (m > c) {
+                tmp = m;
+                m = c;
+                c = tmp;
+            }
+            if (a > m) {
+                tmp = a;
+                a = m;
+                m = tmp;
+            }
+            bandKeys[b] = a << 18 | m << 9 | c;
+        }
+    }
+
+    /**
+     * 新しいバンドnewBandの3行へ、元のバンドbandの行をPERMS[perm]の順に置く
+     */
+    private void setRows(int newBand, int band, int perm) {
+        for (int j = 0; j < 3; j++) {
+            rowOrder[3 * newBand + j] = 3 * band + PERMS[perm][j];
+        }
+    }
+
+    /**
+     * rowOrder、colOrderで並べ替えた盤面の数字を付け替え、これまでの最小のものと比べる
+     * 小さい場合は最小のものと変換を置き換える
+     *
+     * @param found 既に最小のものがあるか
+     * @return 置き換えた場合true
+     */
+    private boolean compareDigits(int t, boolean found) {
+        int[] cells = values[t];
+        for (int v = 0; v <= 9; v++) {
+            labels[v] = 0;
+        }
+        int next = 1;
+        boolean smaller = !found;
+        for (int i = 0; i < 81; i++) {
+            int v = cells[rowOrder[i / 9] * 9 + colOrder[i % 9]];
+            if (v != 0) {
+                if (labels[v] == 0) {
+                    labels[v] = next++;
+                }
+                v = labels[v];
+            }
+            if (!smaller) {
+                if (v > best[i]) {
+                    return false;
+                }
+                if (v < best[i]) {
+                    smaller = true;
+                }
+            }
+            candidate[i] = v;
+        }
+        if (!smaller) {
+            return false;
+        }
+        System.arraycopy(candidate, 0, best, 0, 81);
+        bestTranspose = t;
+        System.arraycopy(rowOrder, 0, bestRows, 0, 9);
+        System.arraycopy(colOrder, 0, bestCols, 0, 9);
+        System.arraycopy(labels, 0, map, 0, 10);
+        return true;
+    }
+
+    /**
+     * 正規形を81文字で表したもの 空白は0
+     */
+    public String getKey() {
+        char[] key = new char[81];
+        for (int i = 0; i < 81; i++) {
+            key[i] = (char) ('0' + best[i]);
+        }
+        return new String(key);
+    }
+
+    /**
+     * canonicalizeした問題と同じ変換で、gridを正規形の並びへ変換してoutへ書き出す
+     */
+    public void toCanonical(int[][] grid, byte[] out) {
+        for (int i = 0; i < 81; i++) {
+            int row = bestRows[i / 9];
+            int col = bestCols[i % 9];
+            int v = bestTranspose == 0 ? grid[row][col] : grid[col][row];
+            out[i] = (byte) (v == 0 ? 0 : map[v]);
+        }
+    }
+
+    /**
+     * toCanonicalの逆 正規形の並びの盤面を、canonicalizeした問題の並びへ戻してoutへ書き出す
+     */
+    public void fromCanonical(byte[] canonical, int[][] out) {
+        for (int i = 0; i < 81; i++) {
+            int row = bestRows[i / 9];
+            int col = bestCols[i % 9];
+            int v = canonical[i] == 0 ? 0 : inverse[canonical[i]];
+            if (bestTranspose == 0) {
+                out[row][col] = v;
+            } else {
+                out[col][row] = v;
+            }
+        }
+    }
+}
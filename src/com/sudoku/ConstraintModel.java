@@ -0,0 +1,216 @@
+package com.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 盤面の制約をデータとして宣言するモデル
+ * 1からsizeまでの数字が1つずつ入るユニット(行、列、ボックス、ジグソーの領域、対角線)と、
+ * 同じ数字が入らず合計が決まっているケージ(キラー数独)を並べ、compileで平らなユニットとピアの表
+ * (Geometry)へ変換する GridSolverは表を引くだけなので、変形数独も通常の数独と同じ速さで解ける
+ *
+ * セルは width × height の盤面の row * width + col で指定する どのユニットにもケージにも属さない
+ * セルは盤面の外として扱う(サムライの隙間など) 問題ではそのセルを0にする
+ */
+public final class ConstraintModel {
+
+    // 数字の個数と、盤面の幅、高さ
+    private final int size;
+    private final int width;
+    private final int height;
+
+    // 通常の数独の形から作った場合のボックスの大きさ それ以外は0
+    private int box;
+
+    private final List<int[]> units = new ArrayList<>();
+    private final List<int[]> cages = new ArrayList<>();
+    private final List<Integer> cageSums = new ArrayList<>();
+
+    /**
+     * ユニットのない盤面
+     *
+     * @param size 数字の個数(1ユニットのセル数) 2〜25
+     */
+    public ConstraintModel(int size, int width, int height) {
+        if (size < 2 || size > Geometry.MAX_BOX * Geometry.MAX_BOX || width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid model: size=" + size
+                    + ", " + width + "x" + height);
+        }
+        this.size = size;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 行、列、box×boxのボックスからなる通常の数独
+     */
+    public static ConstraintModel classic(int box) {
+        ConstraintModel model = new ConstraintModel(box * box, box * box, box * box);
+        model.addGrid(0, 0, box);
+        model.box = box;
+        return model;
+    }
+
+    /**
+     * 行、列と、ボックスの代わりに不規則な領域を持つジグソー数独
+     *
+     * @param regions 各セルの領域の番号(0〜size-1) 各領域はsize個のセルからなる
+     */
+    public static ConstraintModel jigsaw(int[][] regions) {
+        int size = regions.length;
+        ConstraintModel model = new ConstraintModel(size, size, size);
+        model.addLines(0, 0, size);
+        int[][] cells = new int[size][size];
+        int[] counts = new int[size];
+        for (int row = 0; row < size; row++) {
+            if (regions[row].length != size) {
+                throw new IllegalArgumentException("Row " + row + " has " + regions[row].length
+                        + " cells");
+            }
+            for (int col = 0; col < size; col++) {
+                int region = regions[row][col];
+                if (region < 0 || region >= size || counts[region] == size) {
+                    throw new IllegalArgumentException("Invalid region at " + row + "," + col
+                            + ": " + region);
+                }
+                cells[region][counts[region]++] = row * size + col;
+            }
+        }
+        for (int[] region : cells) {
+            model.addUnit(region);
+        }
+        return model;
+    }
+
+    /**
+     * 9×9の盤面5枚の四隅のボックスを重ねたサムライ数独 21×21の盤面で、中央の盤面は(6,6)から始まる
+     * 隙間のセルは盤面の外になる
+     */
+    public static ConstraintModel samurai() {
+        ConstraintModel model = new ConstraintModel(9, 21, 21);
+        model.addGrid(0, 0, 3);
+        model.addGrid(0, 12, 3);
+        model.addGrid(6, 6, 3);
+        model.addGrid(12, 0, 3);
+        model.addGrid(12, 12, 3);
+        return model;
+    }
+
+    /**
+     * (top, left)から始まるbox×boxのボックスの数独の行、列、ボックスを加える
+     */
+    private void addGrid(int top, int left, int box) {
+        int n = box * box;
+        addLines(top, left, n);
+        for (int b = 0; b < n; b++) {
+            int[] cells = new int[n];
+            for (int i = 0; i < n; i++) {
+                cells[i] = (top + b / box * box + i / box) * width + left + b % box * box + i % box;
+            }
+            addUnit(cells);
+        }
+    }
+
+    /**
+     * (top, left)から始まるn×nの範囲の行と列を加える
+     */
+    private void addLines(int top, int left, int n) {
+        for (int i = 0; i < n; i++) {
+            int[] row = new int[n];
+            int[] col = new int[n];
+            for (int j = 0; j < n; j++) {
+                row[j] = (top + i) * width + left + j;
+                col[j] = (top + j) * width + left + i;
+            }
+            addUnit(row);
+            addUnit(col);
+        }
+    }
+
+    /**
+     * 2本の対角線をユニットとして加える(X数独) 盤面が正方形で、1辺がsizeの場合のみ
+     */
+    public ConstraintModel addDiagonals() {
+        if (width != size || height != size) {
+            throw new IllegalStateException("Diagonals need a " + size + "x" + size + " grid");
+        }
+        int[] main = new int[size];
+        int[] anti = new int[size];
+        for (int i = 0; i < size; i++) {
+            main[i] = i * size + i;
+            anti[i] = i * size + size - 1 - i;
+        }
+        addUnit(main);
+        addUnit(anti);
+        return this;
+    }
+
+    /**
+     * 1からsizeまでの数字が1つずつ入るユニットを加える
+     */
+    public ConstraintModel addUnit(int... cells) {
+        if (cells.length != size) {
+            throw new IllegalArgumentException("Unit must have " + size + " cells: "
+                    + cells.length);
+        }
+        units.add(checkCells(cells));
+        return this;
+    }
+
+    /**
+     * 同じ数字が入らず、合計がsumになるケージを加える
+     *
+     * @param sum 合計 0の場合は同じ数字が入らないことだけを表す
+     */
+    public ConstraintModel addCage(int sum, int... cells) {
+        if (cells.length < 1 || cells.length > size) {
+            throw new IllegalArgumentException("Invalid cage size: " + cells.length);
+        }
+        int min = cells.length * (cells.length + 1) / 2;
+        int max = cells.length * (2 * size - cells.length + 1) / 2;
+        if (sum != 0 && (sum < min || sum > max)) {
+            throw new IllegalArgumentException("Impossible cage sum " + sum + " for "
+                    + cells.length + " cells");
+        }
+        cages.add(checkCells(cells));
+        cageSums.add(sum);
+        return this;
+    }
+
+    private int[] checkCells(int[] cells) {
+        int[] sorted = cells.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] < 0 || sorted[i] >= width * height
+                    || (i > 0 && sorted[i] == sorted[i - 1])) {
+                throw new IllegalArgumentException("Invalid cells: " + Arrays.toString(cells));
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * 宣言した制約をユニットとピアの表へ変換する 同じセルからなるユニットは1つにまとめる
+     */
+    public Geometry compile() {
+        List<int[]> distinct = new ArrayList<>();
+        for (int[] unit : units) {
+            boolean duplicate = false;
+            for (int[] other : distinct) {
+                if (Arrays.equals(unit, other)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                distinct.add(unit);
+            }
+        }
+        int[] sums = new int[cageSums.size()];
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = cageSums.get(i);
+        }
+        return new Geometry(size, width, height, box, distinct, cages, sums);
+    }
+}
@@ -0,0 +1,260 @@
+package com.sudoku;
+
+/**
+ * Dancing Links (Algorithm X) による完全被覆ソルバー
+ * 729行(セル×数字) 324列(セル、行×数字、列×数字、ボックス×数字)の疎行列を
+ * ノードオブジェクトではなく事前確保したint配列で表し、インスタンスを使い回す
+ */
+public final class DancingLinks {
+
+    // 解の個数の上限を設けない場合に指定する
+    public static final int ALL_SOLUTIONS = 0;
+
+    private static final int COLUMNS = 324;
+    private static final int ROWS = 729;
+
+    // ノード0はルート、1〜324は列ヘッダ、それ以降は1行につき4ノード
+    private static final int NODES = 1 + COLUMNS + ROWS * 4;
+
+    private final int[] left = new int[NODES];
+    private final int[] right = new int[NODES];
+    private final int[] up = new int[NODES];
+    private final int[] down = new int[NODES];
+    private final int[] column = new int[NODES];
+    // ノードが属する行番号 (cell * 9 + digit - 1)
+    private final int[] rowOf = new int[NODES];
+    // 列ごとの残りノード数
+    private final int[] size = new int[1 + COLUMNS];
+
+    // 行番号から、その行の先頭ノードを引く表
+    private final int[] rowStart = new int[ROWS];
+
+    // 探索中に選んだ行と問題として固定した行
+    private final int[] chosen = new int[81];
+    private final int[] givens = new int[81];
+
+    // 最初に見つかった解
+    private final int[] solution = new int[81];
+
+    private int limit;
+    private int found;
+
+    // 統計情報の加算先
+    private SolverStats stats;
+
+    // 進み具合を書き込み、中止の指示を受ける先(使わない場合null)
+    private SolveMonitor monitor;
+
+    /**
+     * Constructor 全ての行を持つ行列を組み立てる
+     */
+    public DancingLinks() {
+        for (int c = 0; c <= COLUMNS; c++) {
+            left[c] = c == 0 ? COLUMNS : c - 1;
+            right[c] = c == COLUMNS ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+
+        int node = COLUMNS + 1;
+        for (int cell = 0; cell < 81; cell++) {
+            int row = cell / 9;
+            int col = cell % 9;
+            int box = row / 3 * 3 + col / 3;
+            for (int d = 0; d < 9; d++) {
+                int id = cell * 9 + d;
+                int first = node;
+                rowStart[id] = first;
+                int[] cols = {1 + cell, 1 + 81 + row * 9 + d,
+                    1 + 162 + col * 9 + d, 1 + 243 + box * 9 + d};
+                for (int k = 0; k < 4; k++) {
+                    int c = cols[k];
+                    column[node] = c;
+                    rowOf[node] = id;
+                    // 列の末尾へ追加
+                    up[node] = up[c];
+                    down[node] = c;
+                    down[up[c]] = node;
+                    up[c] = node;
+                    size[c]++;
+                    // 行の中で環状につなぐ
+                    left[node] = k == 0 ? first + 3 : node - 1;
+                    right[node] = k == 3 ? first : node + 1;
+                    node++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 解の個数をlimit個まで数える 最初に見つけた解はgetSolutionで取得できる
+     *
+     * @param problem 問題(空白は0)
+     * @param limit 数える解の上限 ALL_SOLUTIONSの場合は全ての解を数える
+     * @return 見つかった解の個数 問題の数字同士が矛盾している場合は0
+     */
+    public int countSolutions(int[][] problem, int limit) {
+        return countSolutions(problem, limit, new SolverStats());
+    }
+
+    /**
+     * 探索の進み具合を書き込む先を設定する 中止を指示された場合は、それまでに見つかった解の個数を返す
+     */
+    public void setMonitor(SolveMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * countSolutionsと同じ 探索ノード数などをstatsへ加算する
+     */
+    public int countSolutions(int[][] problem, int limit, SolverStats stats) {
+        long start = System.nanoTime();
+        this.stats = stats;
+        this.limit = limit;
+        found = 0;
+
+        // 問題の数字を含む行を先に選んでおく
+        int givenCount = 0;
+        boolean valid = true;
+        for (int cell = 0; cell < 81 && valid; cell++) {
+            int value = problem[cell / 9][cell % 9];
+            if (value != 0) {
+                int first = rowStart[cell * 9 + value - 1];
+                // 既に他の数字で覆われた列を含む場合は矛盾している
+                for (int j = first;;) {
+                    if (right[left[column[j]]] != column[j]) {
+                        valid = false;
+                        break;
+                    }
+                    j = right[j];
+                    if (j == first) {
+                        break;
+                    }
+                }
+                if (!valid) {
+                    break;
+                }
+                givens[givenCount++] = first;
+                int j = first;
+                do {
+                    cover(column[j]);
+                    j = right[j];
+                } while (j != first);
+                solution[cell] = value;
+            }
+        }
+
+        if (valid) {
+            search(0);
+        }
+        stats.searchNanos += System.nanoTime() - start;
+
+        // 行列を元に戻し、次の問題で使い回せるようにする
+        for (int g = givenCount - 1; g >= 0; g--) {
+            int first = givens[g];
+            int j = left[first];
+            while (true) {
+                uncover(column[j]);
+                if (j == first) {
+                    break;
+                }
+                j = left[j];
+            }
+        }
+        return valid ? found : 0;
+    }
+
+    /**
+     * 直前のcountSolutionsで最初に見つかった解をgridへ書き出す
+     */
+    public void getSolution(int[][] grid) {
+        for (int cell = 0; cell < 81; cell++) {
+            grid[cell / 9][cell % 9] = solution[cell];
+        }
+    }
+
+    /**
+     * 再帰的に列を選んで被覆する 探索を打ち切る場合true
+     */
+    private boolean search(int depth) {
+        if (right[0] == 0) {
+            if (found == 0) {
+                for (int i = 0; i < depth; i++) {
+                    int id = rowOf[chosen[i]];
+                    solution[id / 9] = id % 9 + 1;
+                }
+            }
+            found++;
+            return limit != ALL_SOLUTIONS && found >= limit;
+        }
+
+        // ノード数が最も少ない列を選ぶ
+        int c = right[0];
+        for (int j = right[c]; j != 0; j = right[j]) {
+            if (size[j] < size[c]) {
+                c = j;
+            }
+        }
+        if (size[c] == 0) {
+            return false;
+        }
+
+        boolean stop = false;
+        cover(c);
+        for (int r = down[c]; r != c && !stop; r = down[r]) {
+            chosen[depth] = r;
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            stats.nodes++;
+            if (depth + 1 > stats.maxDepth) {
+                stats.maxDepth = depth + 1;
+            }
+            if (monitor != null && (stats.nodes & SolveMonitor.CHECK_MASK) == 0
+                    && monitor.checkpoint(depth + 1)) {
+                stop = true;
+            } else {
+                stop = search(depth + 1);
+            }
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+            if (!stop) {
+                stats.backtracks++;
+            }
+        }
+        uncover(c);
+        return stop;
+    }
+
+    /**
+     * 列cとcを含む行を行列から取り除く
+     */
+    private void cover(int c) {
+        left[right[c]] = left[c];
+        right[left[c]] = right[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * coverの逆操作
+     */
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        left[right[c]] = c;
+        right[left[c]] = c;
+    }
+}
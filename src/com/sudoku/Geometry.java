@@ -0,0 +1,227 @@
+package com.sudoku;
+
+import java.util.List;
+
+/**
+ * 盤面の形をGridSolverが引く平らな表にしたもの ConstraintModel.compileで作る
+ * セル番号(row * width + col)から、属するユニットとピア(同じユニットかケージに属するセル)を引く
+ * ユニットは1からsizeまでの数字が1つずつ入るセルの並びで、その後ろに合計の決まったケージが続く
+ * 候補は数字kをビットk-1とするintのマスクで表す(25まで)
+ *
+ * 通常の数独の形はボックスの大きさ2(4×4)から5(25×25)まで、ofで共有のものを引ける
+ *
+ * 1文字で表す場合、空白は0か.、1〜9はそのまま、10以降はA(10)、B(11)…とする(25はP)
+ */
+public final class Geometry {
+
+    public static final int MIN_BOX = 2;
+    public static final int MAX_BOX = 5;
+
+    private static final Geometry[] CLASSIC = new Geometry[MAX_BOX + 1];
+    private static final Geometry SAMURAI;
+
+    static {
+        for (int box = MIN_BOX; box <= MAX_BOX; box++) {
+            CLASSIC[box] = ConstraintModel.classic(box).compile();
+        }
+        SAMURAI = ConstraintModel.samurai().compile();
+    }
+
+    // 数字の個数、盤面の幅と高さ、セル数
+    public final int size;
+    public final int width;
+    public final int height;
+    public final int cells;
+
+    // 通常の数独の形の場合のボックスの大きさ それ以外は0
+    public final int box;
+
+    // 全ての数字が候補である状態
+    final int all;
+
+    // ユニットとケージに属するセル 0〜fullUnits-1が数字が1つずつ入るユニットで、残りがケージ
+    final int[][] units;
+    final int fullUnits;
+
+    // 各ユニットの合計 ケージで合計が決まっている場合のみ0以外
+    final int[] sums;
+
+    // 各セルが属するユニットとケージの番号
+    final int[][] cellUnits;
+
+    // 各セルと同じユニットかケージに属するセル
+    final int[][] peers;
+
+    // 盤面の内側のセル(どこかのユニットかケージに属する)か
+    final boolean[] active;
+
+    Geometry(int size, int width, int height, int box, List<int[]> fullUnits, List<int[]> cages,
+            int[] cageSums) {
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        this.box = box;
+        cells = width * height;
+        all = (int) ((1L << size) - 1);
+
+        this.fullUnits = fullUnits.size();
+        units = new int[fullUnits.size() + cages.size()][];
+        sums = new int[units.length];
+        for (int i = 0; i < this.fullUnits; i++) {
+            units[i] = fullUnits.get(i).clone();
+        }
+        for (int i = 0; i < cages.size(); i++) {
+            units[this.fullUnits + i] = cages.get(i).clone();
+            sums[this.fullUnits + i] = cageSums[i];
+        }
+
+        int[] counts = new int[cells];
+        for (int[] unit : units) {
+            for (int cell : unit) {
+                counts[cell]++;
+            }
+        }
+        cellUnits = new int[cells][];
+        active = new boolean[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            cellUnits[cell] = new int[counts[cell]];
+            active[cell] = counts[cell] > 0;
+            counts[cell] = 0;
+        }
+        for (int unit = 0; unit < units.length; unit++) {
+            for (int cell : units[unit]) {
+                cellUnits[cell][counts[cell]++] = unit;
+            }
+        }
+
+        peers = new int[cells][];
+        boolean[] seen = new boolean[cells];
+        int[] buffer = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int n = 0;
+            for (int unit : cellUnits[cell]) {
+                for (int other : units[unit]) {
+                    if (other != cell && !seen[other]) {
+                        seen[other] = true;
+                        buffer[n++] = other;
+                    }
+                }
+            }
+            peers[cell] = new int[n];
+            for (int i = 0; i < n; i++) {
+                peers[cell][i] = buffer[i];
+                seen[buffer[i]] = false;
+            }
+        }
+    }
+
+    /**
+     * ボックスの大きさboxの通常の数独の形
+     */
+    public static Geometry of(int box) {
+        if (box < MIN_BOX || box > MAX_BOX) {
+            throw new IllegalArgumentException("Unsupported box size: " + box);
+        }
+        return CLASSIC[box];
+    }
+
+    /**
+     * サムライ数独(ConstraintModel.samurai)の形
+     */
+    public static Geometry samurai() {
+        return SAMURAI;
+    }
+
+    /**
+     * 1辺がwidthの正方形の盤面の共有の形(通常の数独か、21の場合はサムライ) 扱えない大きさの場合null
+     */
+    public static Geometry ofWidth(int width) {
+        for (int box = MIN_BOX; box <= MAX_BOX; box++) {
+            if (CLASSIC[box].width == width) {
+                return CLASSIC[box];
+            }
+        }
+        return width == SAMURAI.width ? SAMURAI : null;
+    }
+
+    /**
+     * セル数がcellsの正方形の盤面の共有の形 扱えない大きさの場合null
+     */
+    public static Geometry ofCells(int cells) {
+        for (int box = MIN_BOX; box <= MAX_BOX; box++) {
+            if (CLASSIC[box].cells == cells) {
+                return CLASSIC[box];
+            }
+        }
+        return cells == SAMURAI.cells ? SAMURAI : null;
+    }
+
+    /**
+     * 問題の数字が0〜sizeの範囲にあり、盤面の外のセルが0で、同じユニットとケージに同じ数字がなく、
+     * ケージの数字の合計が決まった値を超えていないか
+     */
+    public boolean isConsistent(int[][] grid) {
+        if (grid.length != height) {
+            return false;
+        }
+        for (int[] row : grid) {
+            if (row.length != width) {
+                return false;
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            int value = grid[cell / width][cell % width];
+            if (value < 0 || value > size || (value != 0 && !active[cell])) {
+                return false;
+            }
+        }
+        for (int unit = 0; unit < units.length; unit++) {
+            int used = 0;
+            int sum = 0;
+            boolean filled = true;
+            for (int cell : units[unit]) {
+                int value = grid[cell / width][cell % width];
+                if (value == 0) {
+                    filled = false;
+                    continue;
+                }
+                int bit = 1 << (value - 1);
+                if ((used & bit) != 0) {
+                    return false;
+                }
+                used |= bit;
+                sum += value;
+            }
+            if (sums[unit] != 0 && (sum > sums[unit] || (filled && sum != sums[unit]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 数字を1文字で表す 空白は0
+     */
+    public static char toChar(int value) {
+        return (char) (value <= 9 ? '0' + value : 'A' + value - 10);
+    }
+
+    /**
+     * 1文字を数字へ変換する 空白(0か.)は0、数字でない場合は-1
+     */
+    public static int fromChar(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c == '.') {
+            return 0;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+}
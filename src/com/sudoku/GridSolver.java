@@ -0,0 +1,477 @@
+package com.sudoku;
+
+/**
+ * 4×4から25×25まで、Geometryで形を指定した盤面(変形数独を含む)を解く探索エンジン
+ * SearchEngineと同じく、推論で埋められるセルを埋めてから候補が最も少ない空白セルで分岐し、
+ * 変更をトレイルに積んで戻す 推論はnaked single、hidden singleと、ケージの合計による候補の絞り込み
+ * 候補は数字kをビットk-1とするintのマスクで持つ(25×25でも25ビットで収まる)
+ * 形ごとに1つ作り、同じスレッドの中で使い回す
+ */
+final class GridSolver {
+
+    // トレイルのセル番号に付ける、そのセルに数字を入れたことを表すフラグ
+    private static final int PLACED = 1 << 31;
+
+    private final Geometry geometry;
+
+    // セルに入っている数字(空白は0、盤面の外は-1)と候補のマスク 数字が入っているセルの候補はその数字だけ
+    private final int[] values;
+    private final int[] candidates;
+
+    // 変更前の候補を積むトレイル 戻すときは後ろから書き戻す
+    private final int[] trailCells;
+    private final int[] trailMasks;
+    private int trailSize;
+
+    // 候補が1つ以下になったセルのキューと、候補が変化したユニットのスタック
+    private final int[] pending;
+    private final boolean[] isPending;
+    private int pendingHead;
+    private int pendingTail;
+    private final int[] dirtyUnits;
+    private final boolean[] isDirty;
+    private int dirtyCount;
+
+    // 候補のないセルができた
+    private boolean failed;
+
+    // 探索スタック 分岐したセルごとに、推論前のトレイルの位置、分岐したセル、まだ試していない数字、
+    // 数字を入れる前のトレイルの位置(まだ入れていない場合は-1)を持つ
+    private final int[] entryMarks;
+    private final int[] branchCells;
+    private final int[] remaining;
+    private final int[] placeMarks;
+
+    // 統計情報、進み具合を書き込む先(使わない場合null)
+    private SolverStats stats = new SolverStats();
+    private SolveMonitor monitor;
+
+    // 数える解の上限(0の場合は上限なし)と、見つかった解の数、最初に見つかった解
+    private int limit;
+    private int found;
+    private final int[] solution;
+
+    GridSolver(Geometry geometry) {
+        this.geometry = geometry;
+        int cells = geometry.cells;
+        values = new int[cells];
+        candidates = new int[cells];
+        // 1セルにつき数字を入れる1回と、候補を減らす最大size回
+        trailCells = new int[cells * (geometry.size + 1)];
+        trailMasks = new int[trailCells.length];
+        pending = new int[cells];
+        isPending = new boolean[cells];
+        dirtyUnits = new int[geometry.units.length];
+        isDirty = new boolean[geometry.units.length];
+        entryMarks = new int[cells];
+        branchCells = new int[cells];
+        remaining = new int[cells];
+        placeMarks = new int[cells];
+        solution = new int[cells];
+    }
+
+    Geometry getGeometry() {
+        return geometry;
+    }
+
+    void setStats(SolverStats stats) {
+        this.stats = stats;
+    }
+
+    void setMonitor(SolveMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * 問題の解の個数をlimit個まで数える 最初に見つかった解はgetSolutionで受け取る
+     *
+     * @param problem size×sizeの問題(空白は0)
+     * @param limit 数える解の上限 0の場合は全ての解を数える
+     * @return 見つかった解の個数 問題の数字同士が矛盾している場合は0
+     */
+    int countSolutions(int[][] problem, int limit) {
+        this.limit = limit;
+        found = 0;
+        if (!load(problem)) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long propagation = stats.propagationNanos;
+        search();
+        stats.searchNanos += System.nanoTime() - start - (stats.propagationNanos - propagation);
+        return found;
+    }
+
+    /**
+     * 最初に見つかった解を書き出す
+     */
+    void getSolution(int[][] grid) {
+        int width = geometry.width;
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            grid[cell / width][cell % width] = Math.max(solution[cell], 0);
+        }
+    }
+
+    /**
+     * 盤面を空にしてから問題の数字を入れる
+     *
+     * @return 問題の数字同士が矛盾している場合false
+     */
+    private boolean load(int[][] problem) {
+        int width = geometry.width;
+        if (problem.length != geometry.height) {
+            throw new IllegalArgumentException("Expected " + geometry.height + " rows: "
+                    + problem.length);
+        }
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            values[cell] = geometry.active[cell] ? 0 : -1;
+            candidates[cell] = geometry.active[cell] ? geometry.all : 0;
+        }
+        trailSize = 0;
+        clearPending();
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            int value = problem[cell / width][cell % width];
+            if (value == 0) {
+                continue;
+            }
+            if (value < 0 || value > geometry.size
+                    || (candidates[cell] & (1 << (value - 1))) == 0) {
+                return false;
+            }
+            place(cell, value);
+        }
+        // ケージは数字がなくても合計で候補を絞れる
+        for (int unit = geometry.fullUnits; unit < geometry.units.length; unit++) {
+            markUnit(unit);
+        }
+        return true;
+    }
+
+    /**
+     * メインの探索ループ SearchEngine.mainAlgorithmと同じ形
+     */
+    private void search() {
+        int top = 0;
+        boolean enter = true;
+
+        while (true) {
+            if (enter) {
+                int in = trailSize;
+                boolean pushed = false;
+                if (propagate()) {
+                    int cell = selectCell();
+                    if (cell < 0) {
+                        found++;
+                        if (found == 1) {
+                            System.arraycopy(values, 0, solution, 0, geometry.cells);
+                        }
+                        if (found == limit) {
+                            return;
+                        }
+                    } else {
+                        entryMarks[top] = in;
+                        branchCells[top] = cell;
+                        remaining[top] = candidates[cell];
+                        placeMarks[top] = -1;
+                        top++;
+                        pushed = true;
+                    }
+                }
+                if (!pushed) {
+                    rollback(in);
+                }
+                enter = false;
+            }
+
+            if (top == 0) {
+                return;
+            }
+            int f = top - 1;
+
+            if (placeMarks[f] >= 0) {
+                rollback(placeMarks[f]);
+                stats.backtracks++;
+            }
+
+            if (remaining[f] == 0) {
+                rollback(entryMarks[f]);
+                top--;
+                continue;
+            }
+
+            // 残りの候補を小さい順に試す
+            int bit = remaining[f] & -remaining[f];
+            remaining[f] &= ~bit;
+            placeMarks[f] = trailSize;
+            place(branchCells[f], Integer.numberOfTrailingZeros(bit) + 1);
+            stats.nodes++;
+            if (top > stats.maxDepth) {
+                stats.maxDepth = top;
+            }
+            if (monitor != null && (stats.nodes & SolveMonitor.CHECK_MASK) == 0
+                    && monitor.checkpoint(top)) {
+                rollback(entryMarks[0]);
+                return;
+            }
+            enter = true;
+        }
+    }
+
+    /**
+     * 候補が最も少ない空白セルを返す 空白セルがない場合は-1
+     */
+    private int selectCell() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            if (values[cell] == 0) {
+                int count = Integer.bitCount(candidates[cell]);
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                    if (count <= 2) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 盤面が変化しなくなるまでnaked single、hidden single、ケージの絞り込みを繰り返す
+     *
+     * @return 矛盾(候補のないセル、入る場所のない数字)が見つかった場合false
+     */
+    private boolean propagate() {
+        long start = System.nanoTime();
+        boolean consistent = true;
+        while (true) {
+            if (failed) {
+                consistent = false;
+                break;
+            }
+            if (pendingHead < pendingTail) {
+                int cell = pending[pendingHead++];
+                isPending[cell] = false;
+                if (pendingHead == pendingTail) {
+                    pendingHead = 0;
+                    pendingTail = 0;
+                }
+                if (values[cell] == 0) {
+                    int mask = candidates[cell];
+                    if (mask == 0) {
+                        consistent = false;
+                        break;
+                    }
+                    place(cell, Integer.numberOfTrailingZeros(mask) + 1);
+                    stats.nakedSingles++;
+                }
+            } else if (dirtyCount > 0) {
+                int unit = dirtyUnits[--dirtyCount];
+                isDirty[unit] = false;
+                boolean result = unit < geometry.fullUnits ? hiddenSingles(unit) : cageSum(unit);
+                if (!result) {
+                    consistent = false;
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+        stats.propagationNanos += System.nanoTime() - start;
+        return consistent;
+    }
+
+    /**
+     * ユニット内で1か所にしか入らない数字をそのセルに入れる
+     *
+     * @return どこにも入らない数字がある場合false
+     */
+    private boolean hiddenSingles(int unit) {
+        int[] cells = geometry.units[unit];
+        int once = 0;
+        int twice = 0;
+        for (int cell : cells) {
+            int mask = candidates[cell];
+            twice |= once & mask;
+            once |= mask;
+        }
+        if (once != geometry.all) {
+            return false;
+        }
+        int singles = once & ~twice;
+        for (int cell : cells) {
+            int bit = candidates[cell] & singles;
+            if (bit != 0 && values[cell] == 0) {
+                if ((bit & (bit - 1)) != 0) {
+                    // 2つの数字が同じセルにしか入らない
+                    return false;
+                }
+                place(cell, Integer.numberOfTrailingZeros(bit) + 1);
+                stats.hiddenSingles++;
+                if (failed) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ケージの合計から、各空白セルの候補のうち残りのセルをどう埋めても合計に合わない数字を取り除く
+     * 残りのセルには他の候補の小さい順(大きい順)に異なる数字が入るとして、合計の範囲だけを確かめる
+     *
+     * @return 合計に合わない場合false
+     */
+    private boolean cageSum(int unit) {
+        int sum = geometry.sums[unit];
+        if (sum == 0) {
+            return true;
+        }
+        int[] cells = geometry.units[unit];
+        int rest = sum;
+        int empty = 0;
+        int union = 0;
+        for (int cell : cells) {
+            if (values[cell] != 0) {
+                rest -= values[cell];
+            } else {
+                empty++;
+                union |= candidates[cell];
+            }
+        }
+        if (empty == 0 || rest <= 0) {
+            return empty == 0 && rest == 0;
+        }
+        for (int cell : cells) {
+            if (values[cell] != 0) {
+                continue;
+            }
+            int mask = candidates[cell];
+            int removed = 0;
+            for (int m = mask; m != 0; m &= m - 1) {
+                int bit = m & -m;
+                int others = rest - Integer.numberOfTrailingZeros(bit) - 1;
+                if (others < lowestSum(union & ~bit, empty - 1)
+                        || others > highestSum(union & ~bit, empty - 1)) {
+                    removed |= bit;
+                }
+            }
+            if (removed != 0) {
+                eliminate(cell, removed);
+                if (failed) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * maskの数字のうち小さい順にcount個の合計 足りない場合はInteger.MAX_VALUE
+     */
+    private static int lowestSum(int mask, int count) {
+        int sum = 0;
+        for (; count > 0; count--) {
+            if (mask == 0) {
+                return Integer.MAX_VALUE;
+            }
+            sum += Integer.numberOfTrailingZeros(mask) + 1;
+            mask &= mask - 1;
+        }
+        return sum;
+    }
+
+    /**
+     * maskの数字のうち大きい順にcount個の合計 足りない場合はInteger.MIN_VALUE
+     */
+    private static int highestSum(int mask, int count) {
+        int sum = 0;
+        for (; count > 0; count--) {
+            if (mask == 0) {
+                return Integer.MIN_VALUE;
+            }
+            int high = Integer.highestOneBit(mask);
+            sum += Integer.numberOfTrailingZeros(high) + 1;
+            mask &= ~high;
+        }
+        return sum;
+    }
+
+    /**
+     * セルに数字を入れ、ピアの候補からその数字を取り除く
+     */
+    private void place(int cell, int value) {
+        int bit = 1 << (value - 1);
+        trailCells[trailSize] = cell | PLACED;
+        trailMasks[trailSize++] = candidates[cell];
+        values[cell] = value;
+        candidates[cell] = bit;
+        markUnits(cell);
+        for (int peer : geometry.peers[cell]) {
+            if (values[peer] == 0 && (candidates[peer] & bit) != 0) {
+                eliminate(peer, bit);
+            }
+        }
+    }
+
+    /**
+     * 空白セルの候補からbitsの数字を取り除く 候補が1つ以下になったセルはキューへ入れる
+     */
+    private void eliminate(int cell, int bits) {
+        int mask = candidates[cell];
+        trailCells[trailSize] = cell;
+        trailMasks[trailSize++] = mask;
+        mask &= ~bits;
+        candidates[cell] = mask;
+        if (mask == 0) {
+            failed = true;
+        } else if ((mask & (mask - 1)) == 0 && !isPending[cell]) {
+            isPending[cell] = true;
+            pending[pendingTail++] = cell;
+        }
+        markUnits(cell);
+    }
+
+    private void markUnits(int cell) {
+        for (int unit : geometry.cellUnits[cell]) {
+            markUnit(unit);
+        }
+    }
+
+    private void markUnit(int unit) {
+        if (!isDirty[unit]) {
+            isDirty[unit] = true;
+            dirtyUnits[dirtyCount++] = unit;
+        }
+    }
+
+    /**
+     * トレイルをmarkの位置まで戻し、推論待ちのセルとユニットを捨てる
+     */
+    private void rollback(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            int cell = trailCells[trailSize];
+            if ((cell & PLACED) != 0) {
+                cell &= ~PLACED;
+                values[cell] = 0;
+            }
+            candidates[cell] = trailMasks[trailSize];
+        }
+        clearPending();
+    }
+
+    private void clearPending() {
+        while (pendingHead < pendingTail) {
+            isPending[pending[pendingHead++]] = false;
+        }
+        pendingHead = 0;
+        pendingTail = 0;
+        while (dirtyCount > 0) {
+            isDirty[dirtyUnits[--dirtyCount]] = false;
+        }
+        failed = false;
+    }
+}
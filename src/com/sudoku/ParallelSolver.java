@@ -0,0 +1,177 @@
+package com.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 1つの難しい問題を並列に解くソルバー
+ * 探索木の上位SPLIT_DEPTH段を、候補が最も少ないセルの候補ごとにForkJoinのタスクへ分け、
+ * ワークスティーリングで分担する 最初に解を見つけたタスクが残りのタスクを中止させる
+ */
+public final class ParallelSolver {
+
+    // 探索木を分割する深さ
+    private static final int SPLIT_DEPTH = 3;
+
+    // 引数なしのコンストラクタで使うプール(CPUのコア数のスレッド)
+    private static ForkJoinPool sharedPool;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * CPUのコア数のスレッドを持つ共有のプールを使う
+     */
+    public ParallelSolver() {
+        this(sharedPool());
+    }
+
+    public ParallelSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    private static synchronized ForkJoinPool sharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new ForkJoinPool();
+        }
+        return sharedPool;
+    }
+
+    /**
+     * 問題を解いて解をsolutionへ書き出す problemとsolutionは同じ配列でもよい
+     *
+     * @return 解けた場合true 解がない場合と問題の数字同士が矛盾している場合false
+     */
+    public boolean solve(int[][] problem, int[][] solution) {
+        return solve(problem, solution, new SolverStats());
+    }
+
+    /**
+     * solveと同じ 全タスクの統計情報を合計してstatsへ加算する
+     * 処理時間は各スレッドの時間の合計になる
+     */
+    public boolean solve(int[][] problem, int[][] solution, SolverStats stats) {
+        return solve(problem, solution, stats, null);
+    }
+
+    /**
+     * solveと同じ 各タスクの探索の進み具合をmonitorへ書き込み、中止された場合と上限を超えた場合はfalseを返す
+     *
+     * @param monitor 使わない場合null
+     */
+    public boolean solve(int[][] problem, int[][] solution, SolverStats stats,
+            SolveMonitor monitor) {
+        BitBoard root = new BitBoard();
+        if (!root.load(problem)) {
+            return false;
+        }
+
+        AtomicBoolean found = new AtomicBoolean();
+        AtomicReference<BitBoard> result = new AtomicReference<>();
+        pool.invoke(new Task(root, 0, found, result, stats, monitor));
+
+        if (result.get() == null) {
+            return false;
+        }
+        result.get().copyTo(solution);
+        return true;
+    }
+
+    /**
+     * 部分木を探索するタスク 盤面はタスクごとに持つ
+     */
+    private static final class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BitBoard board;
+        private final int depth;
+        private final AtomicBoolean found;
+        private final AtomicReference<BitBoard> result;
+        // 全タスクで共有する統計情報 加算時はこのオブジェクトで同期する
+        private final SolverStats total;
+        private final SolveMonitor monitor;
+
+        private Task(BitBoard board, int depth, AtomicBoolean found,
+                AtomicReference<BitBoard> result, SolverStats total, SolveMonitor monitor) {
+            this.board = board;
+            this.depth = depth;
+            this.found = found;
+            this.result = result;
+            this.total = total;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get() || (monitor != null && monitor.isStopped())) {
+                return;
+            }
+
+            SearchEngine engine = new SearchEngine(board);
+            engine.setCancelled(found);
+            engine.setMonitor(monitor);
+
+            // 十分に分割した後は、このタスクの中で最後まで探索する
+            if (depth >= SPLIT_DEPTH) {
+                boolean solved = engine.search();
+                merge(engine.getStats());
+                if (solved) {
+                    report();
+                }
+                return;
+            }
+
+            boolean consistent = engine.propagate();
+            int cell = consistent ? engine.selectCell() : -1;
+            merge(engine.getStats());
+            if (!consistent) {
+                return;
+            }
+            if (cell < 0) {
+                report();
+                return;
+            }
+
+            // 候補ごとに盤面を複製して子タスクにする
+            List<Task> children = new ArrayList<>();
+            int mask = board.candidates[cell];
+            while (mask != 0) {
+                int value = Integer.numberOfTrailingZeros(mask) + 1;
+                mask &= mask - 1;
+
+                BitBoard child = new BitBoard();
+                child.copyFrom(board);
+                child.place(cell, value);
+                children.add(new Task(child, depth + 1, found, result, total, monitor));
+            }
+            invokeAll(children);
+        }
+
+        /**
+         * このタスクの統計情報を全体へ加算する 深さはタスクの深さの分だけずらし、
+         * 親タスクがこのタスクを作るときに入れた数字を1ノードとして数える
+         */
+        private void merge(SolverStats stats) {
+            stats.maxDepth += depth;
+            if (depth > 0) {
+                stats.nodes++;
+            }
+            synchronized (total) {
+                total.add(stats);
+            }
+        }
+
+        /**
+         * 最初に見つかった解だけを結果にする
+         */
+        private void report() {
+            if (found.compareAndSet(false, true)) {
+                result.set(board);
+            }
+        }
+    }
+}
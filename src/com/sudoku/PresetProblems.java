@@ -0,0 +1,44 @@
+package com.sudoku;
+
+/**
+ * 組み込みの問題 以前Easy/Normal/Hardボタンで表示していたもので、
+ * 現在は毎回同じ問題で比べられるようベンチマークで使う(ボタンはPuzzleGeneratorで作った問題を表示する)
+ */
+final class PresetProblems {
+
+    static final int[][] EASY
+            = {{0, 8, 0, 7, 0, 1, 0, 5, 0}, // 1
+            {0, 0, 2, 0, 4, 0, 9, 0, 0}, // 2
+            {9, 3, 0, 0, 0, 0, 0, 7, 4}, // 3
+            {8, 0, 0, 1, 0, 4, 0, 0, 6}, // 4
+            {0, 0, 6, 0, 0, 0, 1, 0, 0}, // 5
+            {7, 0, 0, 9, 0, 3, 0, 0, 8}, // 6
+            {2, 4, 0, 0, 0, 0, 0, 1, 5}, // 7
+            {0, 0, 7, 0, 5, 0, 3, 0, 0}, // 8
+            {0, 5, 0, 8, 0, 7, 0, 4, 0},}; // 9
+
+    static final int[][] NORMAL
+            = {{0, 0, 0, 2, 0, 9, 0, 0, 0}, // 1
+            {0, 0, 5, 8, 0, 6, 3, 0, 0}, // 2
+            {0, 6, 0, 0, 0, 0, 0, 4, 0}, // 3
+            {7, 4, 0, 0, 0, 0, 0, 8, 2}, // 4
+            {0, 0, 0, 0, 6, 0, 0, 0, 0}, // 5
+            {3, 8, 0, 0, 0, 0, 0, 9, 6}, // 6
+            {0, 9, 0, 0, 0, 0, 0, 3, 0}, // 7
+            {0, 0, 2, 7, 0, 4, 8, 0, 0}, // 8
+            {0, 0, 0, 5, 0, 2, 0, 0, 0},}; // 9
+
+    static final int[][] HARD
+            = {{0, 0, 9, 0, 0, 0, 0, 0, 0}, // 1
+            {0, 8, 0, 6, 0, 5, 0, 2, 0}, // 2
+            {5, 0, 1, 0, 7, 8, 0, 0, 0}, // 3
+            {0, 0, 0, 0, 0, 0, 7, 0, 0}, // 4
+            {7, 0, 6, 0, 4, 0, 1, 0, 2}, // 5
+            {0, 0, 4, 0, 0, 0, 0, 0, 0}, // 6
+            {0, 0, 0, 7, 2, 0, 9, 0, 3}, // 7
+            {0, 9, 0, 3, 0, 1, 0, 8, 0}, // 8
+            {0, 0, 0, 0, 0, 0, 6, 0, 0},}; // 9
+
+    private PresetProblems() {
+    }
+}
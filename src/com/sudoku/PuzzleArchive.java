@@ -0,0 +1,370 @@
+package com.sudoku;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 問題を1問41バイトに詰めて並べたバイナリ形式のファイル
+ * テキスト形式(1問82〜90バイト)より小さく、読み込み時に文字列を解析しなくてよい
+ *
+ * 先頭HEADER_SIZEバイトはヘッダで、マジックナンバー"SDKA"、版(short)、1問のバイト数(short)、
+ * 問題数(long)をビッグエンディアンで書く 問題の長さは固定なので、i番目の問題の位置は
+ * HEADER_SIZE + i * RECORD_SIZE で求まり、ヘッダがそのまま索引になる
+ * 1問は81セルを4ビットずつ(空白は0)、セル0から順に上位ビット、下位ビットの順に詰め、
+ * 最後のバイトの下位4ビットに難易度(PuzzleGenerator.EASY〜HARD、不明な場合はNO_LEVEL)を入れる
+ *
+ * 読み込みはFileChannel.mapでファイルをメモリへ割り当て、必要な問題だけをその場で展開する
+ * 2GBを超えるファイルは問題の境界でSEGMENT_RECORDS問ずつ区切って割り当てる
+ * getは複数のスレッドから同時に呼んでよい
+ *
+ * 使い方: java -cp Sudoku.jar com.sudoku.PuzzleArchive [-x] [-o 出力ファイル] [入力ファイル]
+ * テキスト形式(BatchSolver、PuzzleGeneratorと同じ)をバイナリ形式へ変換する 形式が正しくない行は飛ばす
+ * -x を指定した場合はバイナリ形式をテキスト形式へ戻す 入力ファイルを省略するか - を指定した場合は標準入力から読む
+ */
+public final class PuzzleArchive implements Closeable {
+
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 41;
+    public static final int VERSION = 1;
+
+    // 難易度が分からない問題
+    public static final int NO_LEVEL = 0xF;
+
+    private static final byte[] MAGIC = {'S', 'D', 'K', 'A'};
+
+    // 1回に割り当てる問題数(1GB弱)
+    private static final int SEGMENT_RECORDS = (1 << 30) / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    private PuzzleArchive(FileChannel channel, MappedByteBuffer[] segments, long count) {
+        this.channel = channel;
+        this.segments = segments;
+        this.count = count;
+    }
+
+    /**
+     * ファイルを読み込み用に割り当てる
+     *
+     * @throws IOException ヘッダが正しくない場合と、ファイルが問題数より短い場合も
+     */
+    public static PuzzleArchive open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // 読み終わるまで繰り返す
+            }
+            header.flip();
+            if (!hasMagic(header)) {
+                throw new IOException("Not a puzzle archive: " + path);
+            }
+            int version = header.getShort(4);
+            int recordSize = header.getShort(6);
+            long count = header.getLong(8);
+            if (version != VERSION || recordSize != RECORD_SIZE) {
+                throw new IOException("Unsupported archive version: " + version
+                        + " (record size " + recordSize + ")");
+            }
+            if (count < 0 || channel.size() < HEADER_SIZE + count * RECORD_SIZE) {
+                throw new IOException("Truncated archive: " + path);
+            }
+
+            MappedByteBuffer[] segments
+                    = new MappedByteBuffer[(int) ((count + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s * SEGMENT_RECORDS;
+                long records = Math.min(SEGMENT_RECORDS, count - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+            }
+            return new PuzzleArchive(channel, segments, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * ファイルがマジックナンバーで始まっているか 読めない場合はfalse
+     */
+    public static boolean isArchive(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // 読み終わるまで繰り返す
+            }
+            header.flip();
+            return hasMagic(header);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer header) {
+        if (header.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 問題数
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * index番目の問題をgridへ展開する
+     *
+     * @return 1〜9、0以外の値のセルがある場合false(gridの内容は不定)
+     */
+    public boolean get(long index, int[][] grid) {
+        MappedByteBuffer segment = segment(index);
+        int offset = offset(index);
+        for (int i = 0; i < 81; i++) {
+            int b = segment.get(offset + (i >> 1));
+            int value = (i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+            if (value > 9) {
+                return false;
+            }
+            grid[i / 9][i % 9] = value;
+        }
+        return true;
+    }
+
+    /**
+     * index番目の問題の難易度 不明な場合NO_LEVEL
+     */
+    public int getLevel(long index) {
+        int level = segment(index).get(offset(index) + RECORD_SIZE - 1) & 0xF;
+        return level < PuzzleGenerator.LEVEL_NAMES.length ? level : NO_LEVEL;
+    }
+
+    /**
+     * index番目の問題を81文字でbufへ追加する 空白は0、1〜9以外の値は?
+     */
+    public void format(long index, StringBuilder buf) {
+        MappedByteBuffer segment = segment(index);
+        int offset = offset(index);
+        for (int i = 0; i < 81; i++) {
+            int b = segment.get(offset + (i >> 1));
+            int value = (i & 1) == 0 ? (b >> 4) & 0xF : b & 0xF;
+            buf.append(value > 9 ? '?' : (char) ('0' + value));
+        }
+    }
+
+    private MappedByteBuffer segment(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return segments[(int) (index / SEGMENT_RECORDS)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index % SEGMENT_RECORDS) * RECORD_SIZE;
+    }
+
+    /**
+     * 割り当てたバッファはGCで解放されるまで有効なので、閉じた後にgetを呼ばないこと
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * バイナリ形式のファイルを先頭から書き出す 問題数はcloseでヘッダへ書き込む
+     * 1つのインスタンスを複数のスレッドで使わないこと
+     */
+    public static final class Writer implements Closeable {
+
+        // 一度に書き出す問題数
+        private static final int BUFFER_RECORDS = 1024;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer
+                = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+        private long count;
+
+        /**
+         * pathを作り直し、問題数0のヘッダを書き込む
+         */
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.put(MAGIC).putShort((short) VERSION).putShort((short) RECORD_SIZE).putLong(0);
+        }
+
+        /**
+         * 問題を1問追加する
+         *
+         * @param grid 各セルが0〜9の盤面
+         * @param level PuzzleGenerator.EASY〜HARD 不明な場合NO_LEVEL
+         */
+        public void add(int[][] grid, int level) throws IOException {
+            if (buffer.remaining() < RECORD_SIZE) {
+                flush();
+            }
+            for (int i = 0; i < 80; i += 2) {
+                buffer.put((byte) (grid[i / 9][i % 9] << 4 | grid[(i + 1) / 9][(i + 1) % 9]));
+            }
+            buffer.put((byte) (grid[8][8] << 4 | (level & 0xF)));
+            count++;
+        }
+
+        /**
+         * 追加した問題数
+         */
+        public long size() {
+            return count;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                // ヘッダの問題数を書き換える
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putLong(0, count);
+                while (header.hasRemaining()) {
+                    channel.write(header, 8 + header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        boolean extract = false;
+        String input = "-";
+        String output = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-x":
+                    extract = true;
+                    break;
+                case "-o":
+                    output = args[++i];
+                    break;
+                default:
+                    if (args[i].startsWith("-") && !args[i].equals("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    input = args[i];
+                    break;
+            }
+        }
+
+        long start = System.nanoTime();
+        long count;
+        long skipped = 0;
+        if (extract) {
+            if (input.equals("-")) {
+                throw new IllegalArgumentException("Input archive is required");
+            }
+            try (PuzzleArchive archive = open(Paths.get(input));
+                    BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                            output == null || output.equals("-")
+                                    ? System.out : new FileOutputStream(output),
+                            StandardCharsets.US_ASCII), 1 << 16)) {
+                count = archive.size();
+                StringBuilder line = new StringBuilder(96);
+                for (long i = 0; i < count; i++) {
+                    line.setLength(0);
+                    archive.format(i, line);
+                    int level = archive.getLevel(i);
+                    if (level != NO_LEVEL) {
+                        line.append('\t').append(PuzzleGenerator.LEVEL_NAMES[level]);
+                    }
+                    out.append(line).append('\n');
+                }
+            }
+        } else {
+            if (output == null) {
+                throw new IllegalArgumentException("Output file is required (-o)");
+            }
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    input.equals("-") ? System.in : new FileInputStream(input),
+                    StandardCharsets.US_ASCII), 1 << 16);
+                    Writer out = new Writer(Paths.get(output))) {
+                int[][] grid = new int[9][9];
+                String str;
+                while ((str = in.readLine()) != null) {
+                    str = str.trim();
+                    if (str.isEmpty()) {
+                        continue;
+                    }
+                    if (!BatchSolver.parse(str, grid)) {
+                        skipped++;
+                        continue;
+                    }
+                    out.add(grid, parseLevel(str));
+                }
+                count = out.size();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.err.println("問題数：" + count + (skipped > 0 ? " (スキップ " + skipped + "行)" : ""));
+        System.err.println("処理時間：" + elapsed / 1000000 + "ms");
+    }
+
+    /**
+     * 82文字目以降のタブで区切った難易度 ない場合と分からない場合はNO_LEVEL
+     */
+    private static int parseLevel(String str) {
+        if (str.length() <= 82) {
+            return NO_LEVEL;
+        }
+        String name = str.substring(82);
+        int tab = name.indexOf('\t');
+        if (tab >= 0) {
+            name = name.substring(0, tab);
+        }
+        for (int level = 0; level < PuzzleGenerator.LEVEL_NAMES.length; level++) {
+            if (PuzzleGenerator.LEVEL_NAMES[level].equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return NO_LEVEL;
+    }
+}
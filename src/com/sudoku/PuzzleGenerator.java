@@ -0,0 +1,434 @@
+package com.sudoku;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 数独の問題を作る
+ * 乱数で埋めた盤面から、解が1つのままになるようにヒントを1つずつ取り除き、
+ * 解くのに必要な推論で難易度を付ける
+ * 易しい: naked single、hidden singleだけで解ける
+ * 普通: naked/hidden pair・triple、pointing/box-line reductionまで使えば解ける
+ * 難しい: 推論だけでは解けず、数字を仮に入れて分岐する必要がある
+ * 同じシードからは同じ問題を作る 1つのインスタンスを複数のスレッドで使わないこと
+ *
+ * 使い方: java -cp Sudoku.jar com.sudoku.PuzzleGenerator [-l easy|normal|hard|any] [-n 問題数]
+ * [-t スレッド数] [-s シード] [-o 出力ファイル]
+ * 1行に1問、81文字の問題とタブで区切った難易度を書き出す(そのままBatchSolverの入力にできる)
+ * CHUNK_SIZE問ずつ作った順に書き出すので、問題数に関わらず使用メモリは一定
+ * シードを省略した場合は時刻から決め、再現できるよう標準エラー出力に表示する
+ */
+public final class PuzzleGenerator {
+
+    // 難易度 Sudokuの難易度の番号と同じ
+    public static final int EASY = 0;
+    public static final int NORMAL = 1;
+    public static final int HARD = 2;
+
+    // 難易度を指定しない(取り除けるだけヒントを取り除く)
+    public static final int ANY = -1;
+
+    // rateで、解が1つでない問題に返す値
+    public static final int NOT_UNIQUE = -2;
+
+    static final String[] LEVEL_NAMES = {"easy", "normal", "hard"};
+
+    // 一括生成でワーカーへ一度に渡す問題数
+    private static final int CHUNK_SIZE = 64;
+
+    // スレッドごとに生成中・書き出し待ちにしておけるチャンク数
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final int[][] EMPTY = new int[9][9];
+
+    private final BitBoard board = new BitBoard();
+    private final SearchEngine engine = new SearchEngine(board);
+
+    // 盤面を埋める数字の順番と、ヒントを取り除く順番を決める乱数
+    private CandidateOrder random;
+
+    // ヒントを取り除くセルの順番
+    private final int[] cells = new int[81];
+
+    // 直前に作った問題の難易度
+    private int level;
+
+    /**
+     * 時刻をシードにする
+     */
+    public PuzzleGenerator() {
+        this(System.nanoTime());
+    }
+
+    public PuzzleGenerator(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * 乱数をseedから始め直す
+     */
+    public void setSeed(long seed) {
+        random = new CandidateOrder(CandidateOrder.RANDOM, seed);
+        engine.setCandidateOrder(random);
+    }
+
+    /**
+     * 難易度を指定せずに問題を作る 難易度はgetLevelで取得できる
+     */
+    public int[][] generate() {
+        return generate(ANY);
+    }
+
+    /**
+     * 指定した難易度の問題を作る 難易度を超えない範囲でヒントを取り除き、
+     * 最後に指定した難易度にならなかった場合は、別の盤面で作り直す
+     *
+     * @param target EASY、NORMAL、HARD、ANYのいずれか
+     * @return 新しい配列(空白は0)
+     */
+    public int[][] generate(int target) {
+        if (target < ANY || target > HARD) {
+            throw new IllegalArgumentException("Unknown level: " + target);
+        }
+        int max = target == ANY ? HARD : target;
+
+        while (true) {
+            int[][] puzzle = fillGrid();
+
+            // ヒントを取り除くセルの順番を乱数で決める
+            for (int i = 0; i < 81; i++) {
+                cells[i] = i;
+            }
+            for (int i = 80; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = cells[i];
+                cells[i] = cells[j];
+                cells[j] = tmp;
+            }
+
+            // 全て埋まった盤面は易しい問題として扱う
+            int rating = EASY;
+            for (int i = 0; i < 81; i++) {
+                int row = cells[i] / 9;
+                int col = cells[i] % 9;
+                int value = puzzle[row][col];
+                puzzle[row][col] = 0;
+                int r = rate(puzzle, max, cells[i], value);
+                if (r == NOT_UNIQUE || r > max) {
+                    // 解が1つでなくなるか、難しくなりすぎる場合はヒントを戻す
+                    puzzle[row][col] = value;
+                } else {
+                    rating = r;
+                }
+            }
+
+            if (target == ANY || rating == target) {
+                level = rating;
+                return puzzle;
+            }
+        }
+    }
+
+    /**
+     * 直前にgenerateで作った問題の難易度
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 問題の難易度を判定する
+     *
+     * @return EASY、NORMAL、HARDのいずれか 解が1つでない場合と問題の数字同士が矛盾している場合はNOT_UNIQUE
+     */
+    public int rate(int[][] puzzle) {
+        return rate(puzzle, HARD, -1, 0);
+    }
+
+    /**
+     * 問題の難易度を判定する 難易度がmaxを超えると分かった時点でmaxより大きい値を返し、
+     * その場合は解が1つであるかを確かめない
+     * 推論だけで全てのセルが埋まる場合は、解が1つであることも確かめたことになる
+     *
+     * @param removed 解が1つの問題からヒントを1つ取り除いた場合、そのセル(それ以外は-1)
+     * @param value 取り除いたヒントの数字
+     */
+    private int rate(int[][] puzzle, int max, int removed, int value) {
+        if (!board.load(puzzle)) {
+            return NOT_UNIQUE;
+        }
+
+        engine.setSinglesOnly(true);
+        boolean consistent = engine.propagate();
+        engine.setSinglesOnly(false);
+        if (!consistent) {
+            return NOT_UNIQUE;
+        }
+        if (engine.selectCell() < 0) {
+            return EASY;
+        }
+        if (max == EASY) {
+            return NORMAL;
+        }
+
+        // 調べていないpair・triple・intersectionのユニットが残っているので、続けて推論する
+        if (!engine.propagate()) {
+            return NOT_UNIQUE;
+        }
+        if (engine.selectCell() < 0) {
+            return NORMAL;
+        }
+        if (max == NORMAL) {
+            return HARD;
+        }
+
+        if (removed < 0) {
+            // 2つ目の解が見つかった時点で打ち切る
+            return engine.countSolutions(2) == 1 ? HARD : NOT_UNIQUE;
+        }
+        // 取り除く前の解は1つなので、別の解があれば取り除いたセルの数字が異なる
+        // そのセルから元の数字を除いて解が見つからなければ、解は1つのまま
+        if (board.values[removed] != 0) {
+            return HARD;
+        }
+        board.eliminate(removed, 1 << (value - 1));
+        return engine.search() ? NOT_UNIQUE : HARD;
+    }
+
+    /**
+     * 乱数の順番で数字を入れ、全て埋まった盤面を作る
+     * 候補の多い盤面ではpair・triple・intersectionがほとんど効かないので、singleだけで推論する
+     */
+    private int[][] fillGrid() {
+        board.load(EMPTY);
+        engine.setSinglesOnly(true);
+        engine.search();
+        engine.setSinglesOnly(false);
+        int[][] grid = new int[9][9];
+        board.copyTo(grid);
+        return grid;
+    }
+
+    /**
+     * count問をthreads個のスレッドで分担して作る i番目の問題はseed + iをシードにして作るので、
+     * スレッド数に関わらず同じ結果になる
+     *
+     * @param levels 各問題の難易度の書き出し先(不要な場合null)
+     */
+    public static int[][][] generate(final int count, final int target, int threads,
+            final long seed, final int[] levels) throws InterruptedException {
+        final int[][][] puzzles = new int[count][][];
+        if (threads <= 1) {
+            generateRange(new PuzzleGenerator(seed), puzzles, levels, 0, count, target, seed);
+            return puzzles;
+        }
+
+        final ThreadLocal<PuzzleGenerator> generators = new ThreadLocal<PuzzleGenerator>() {
+            @Override
+            protected PuzzleGenerator initialValue() {
+                return new PuzzleGenerator(seed);
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < count; start += CHUNK_SIZE) {
+                final int from = start;
+                final int to = Math.min(count, start + CHUNK_SIZE);
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        generateRange(generators.get(), puzzles, levels, from, to, target, seed);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return puzzles;
+    }
+
+    private static void generateRange(PuzzleGenerator generator, int[][][] puzzles, int[] levels,
+            int from, int to, int target, long seed) {
+        for (int i = from; i < to; i++) {
+            generator.setSeed(seed + i);
+            puzzles[i] = generator.generate(target);
+            if (levels != null) {
+                levels[i] = generator.getLevel();
+            }
+        }
+    }
+
+    /**
+     * count問をthreads個のスレッドで分担して作り、1行に1問、81文字の問題とタブで区切った難易度を
+     * outへ書き出す CHUNK_SIZE問ずつ作った順に書き出し、全ての問題を溜めておくことはしない
+     * 問題はgenerate(count, ...)と同じく、i番目をseed + iから作る
+     *
+     * @return 難易度ごとの問題数
+     */
+    public static int[] write(int count, final int target, int threads, final long seed,
+            Writer out) throws IOException, InterruptedException {
+        int[] histogram = new int[LEVEL_NAMES.length];
+        if (threads <= 1) {
+            PuzzleGenerator generator = new PuzzleGenerator(seed);
+            for (int start = 0; start < count; start += CHUNK_SIZE) {
+                Chunk chunk = new Chunk();
+                generateChunk(generator, chunk, start, Math.min(count, start + CHUNK_SIZE),
+                        target, seed);
+                write(chunk, out, histogram);
+            }
+            return histogram;
+        }
+
+        final ThreadLocal<PuzzleGenerator> generators = new ThreadLocal<PuzzleGenerator>() {
+            @Override
+            protected PuzzleGenerator initialValue() {
+                return new PuzzleGenerator(seed);
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        try {
+            for (int start = 0; start < count; start += CHUNK_SIZE) {
+                final int from = start;
+                final int to = Math.min(count, start + CHUNK_SIZE);
+                pending.add(pool.submit(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() {
+                        Chunk chunk = new Chunk();
+                        generateChunk(generators.get(), chunk, from, to, target, seed);
+                        return chunk;
+                    }
+                }));
+                // 書き出し待ちが溜まりすぎないよう、先頭のチャンクから順に書き出す
+                if (pending.size() >= threads * CHUNKS_PER_THREAD) {
+                    write(get(pending.poll()), out, histogram);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(get(pending.poll()), out, histogram);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return histogram;
+    }
+
+    /**
+     * 1チャンク分の出力と、難易度ごとの問題数
+     */
+    private static final class Chunk {
+
+        private final StringBuilder text = new StringBuilder(CHUNK_SIZE * 88);
+        private final int[] histogram = new int[LEVEL_NAMES.length];
+    }
+
+    private static void generateChunk(PuzzleGenerator generator, Chunk chunk, int from, int to,
+            int target, long seed) {
+        for (int i = from; i < to; i++) {
+            generator.setSeed(seed + i);
+            int[][] puzzle = generator.generate(target);
+            BatchSolver.format(puzzle, chunk.text);
+            chunk.text.append('\t').append(LEVEL_NAMES[generator.getLevel()]).append('\n');
+            chunk.histogram[generator.getLevel()]++;
+        }
+    }
+
+    private static Chunk get(Future<Chunk> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void write(Chunk chunk, Writer out, int[] histogram) throws IOException {
+        out.append(chunk.text);
+        for (int level = 0; level < histogram.length; level++) {
+            histogram[level] += chunk.histogram[level];
+        }
+    }
+
+    /**
+     * 難易度の名前を番号へ変換する
+     */
+    static int parseLevel(String name) {
+        switch (name.toLowerCase()) {
+            case "easy":
+                return EASY;
+            case "normal":
+                return NORMAL;
+            case "hard":
+                return HARD;
+            case "any":
+                return ANY;
+            default:
+                throw new IllegalArgumentException("Unknown level: " + name);
+        }
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int target = ANY;
+        int count = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String output = "-";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-l":
+                    target = parseLevel(args[++i]);
+                    break;
+                case "-n":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-o":
+                    output = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        int[] histogram;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                output.equals("-") ? System.out : new FileOutputStream(output),
+                StandardCharsets.US_ASCII), 1 << 16)) {
+            histogram = write(count, target, threads, seed, out);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.err.println("問題数：" + count + " (easy " + histogram[EASY]
+                + ", normal " + histogram[NORMAL] + ", hard " + histogram[HARD] + ")");
+        System.err.println("シード：" + seed);
+        System.err.println("処理時間：" + elapsed / 1000000 + "ms");
+        System.err.printf("処理速度：%.1f puzzles/s%n", count * 1e9 / Math.max(elapsed, 1));
+    }
+}
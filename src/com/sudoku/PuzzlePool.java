@@ -0,0 +1,170 @@
+package com.sudoku;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 難易度ごとに作っておいた問題を貯めておくプール
+ * バックグラウンドのスレッドが、問題数がlowを下回った難易度をhighまで補充する
+ * 補充中は最も問題の少ない難易度から1問ずつ作るので、難しい問題の補充で他の難易度が待たされることはない
+ * take、pollは複数のスレッドから呼んでよい takeはプールが空の場合に呼び出したスレッドで問題を作るので、
+ * GUIのスレッドからはpollを呼び、nullの場合は別のスレッドでtakeを呼ぶこと
+ *
+ * 水位の既定値はシステムプロパティ sudoku.pool.low、sudoku.pool.high で変更できる
+ */
+public final class PuzzlePool {
+
+    public static final int DEFAULT_LOW = 2;
+    public static final int DEFAULT_HIGH = 8;
+
+    private final int low;
+    private final int high;
+
+    // 難易度ごとの問題 lockで同期する
+    private final List<ArrayDeque<int[][]>> pools = new ArrayList<>();
+    // 難易度ごとの、highまで補充している途中かどうか
+    private final boolean[] filling = new boolean[PuzzleGenerator.LEVEL_NAMES.length];
+    private final Object lock = new Object();
+
+    // プールが空の場合に呼び出したスレッドで使う生成器 このオブジェクトで同期する
+    private final PuzzleGenerator fallback = new PuzzleGenerator();
+
+    private volatile boolean closed;
+
+    /**
+     * 水位をシステムプロパティ(なければDEFAULT_LOW、DEFAULT_HIGH)にする
+     */
+    public PuzzlePool() {
+        this(Integer.getInteger("sudoku.pool.low", DEFAULT_LOW),
+                Integer.getInteger("sudoku.pool.high", DEFAULT_HIGH));
+    }
+
+    /**
+     * 全ての難易度をhighまで補充し始める
+     *
+     * @param low 問題数がこれを下回ると補充を始める
+     * @param high 補充をやめる問題数
+     */
+    public PuzzlePool(int low, int high) {
+        if (low < 1 || high < low) {
+            throw new IllegalArgumentException("Invalid watermarks: low=" + low + ", high=" + high);
+        }
+        this.low = low;
+        this.high = high;
+        for (int level = 0; level < filling.length; level++) {
+            pools.add(new ArrayDeque<int[][]>(high));
+            filling[level] = true;
+        }
+
+        Thread refiller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                refill();
+            }
+        }, "PuzzlePool-refill");
+        refiller.setDaemon(true);
+        refiller.setPriority(Thread.MIN_PRIORITY);
+        refiller.start();
+    }
+
+    /**
+     * 難易度levelの問題を1つ取り出す
+     *
+     * @param level PuzzleGenerator.EASY、NORMAL、HARDのいずれか
+     * @return 新しい配列(空白は0)
+     */
+    public int[][] take(int level) {
+        int[][] puzzle = poll(level);
+        if (puzzle == null) {
+            synchronized (fallback) {
+                puzzle = fallback.generate(level);
+            }
+        }
+        return puzzle;
+    }
+
+    /**
+     * 難易度levelの貯めてある問題を1つ取り出す 問題を作って待つことはしない
+     *
+     * @param level PuzzleGenerator.EASY、NORMAL、HARDのいずれか
+     * @return 新しい配列(空白は0) プールが空の場合null
+     */
+    public int[][] poll(int level) {
+        if (level < 0 || level >= filling.length) {
+            throw new IllegalArgumentException("Unknown level: " + level);
+        }
+        synchronized (lock) {
+            int[][] puzzle = pools.get(level).poll();
+            if (pools.get(level).size() < low && !filling[level]) {
+                filling[level] = true;
+                lock.notifyAll();
+            }
+            return puzzle;
+        }
+    }
+
+    /**
+     * 難易度levelの貯めてある問題数
+     */
+    public int size(int level) {
+        synchronized (lock) {
+            return pools.get(level).size();
+        }
+    }
+
+    /**
+     * 補充をやめる 貯めてある問題は引き続き取り出せる
+     */
+    public void close() {
+        closed = true;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 補充スレッドの処理 補充中の難易度のうち最も問題の少ないものを1問ずつ作る
+     */
+    private void refill() {
+        PuzzleGenerator generator = new PuzzleGenerator();
+        try {
+            while (true) {
+                int level;
+                synchronized (lock) {
+                    while ((level = nextLevel()) < 0 && !closed) {
+                        lock.wait();
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+
+                int[][] puzzle = generator.generate(level);
+                synchronized (lock) {
+                    ArrayDeque<int[][]> pool = pools.get(level);
+                    pool.add(puzzle);
+                    if (pool.size() >= high) {
+                        filling[level] = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // 補充をやめる
+        }
+    }
+
+    /**
+     * 補充中の難易度のうち最も問題の少ないもの ない場合は-1 lockを持って呼ぶこと
+     */
+    private int nextLevel() {
+        int best = -1;
+        for (int level = 0; level < filling.length; level++) {
+            if (filling[level]
+                    && (best < 0 || pools.get(level).size() < pools.get(best).size())) {
+                best = level;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,540 @@
+package com.sudoku;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MyAlgorithmの探索部分 BitBoardの上で、推論で埋められるセルを埋め、候補を減らしてから
+ * 候補が最も少ない空白セルで分岐する
+ * 推論は naked single、hidden single、naked/hidden pair・triple、pointing/box-line reduction
+ * 盤面ごとに1つ作り、同じスレッドの中で使い回す
+ */
+final class SearchEngine {
+
+    // 探索する盤面
+    private final BitBoard board;
+
+    // 他のスレッドから探索の中止を指示するフラグ(使わない場合null)
+    private AtomicBoolean cancelled;
+
+    // 進み具合を書き込み、中止の指示を受ける先(使わない場合null)
+    private SolveMonitor monitor;
+
+    // 統計情報 search、fillのたびに加算していく
+    private SolverStats stats = new SolverStats();
+
+    // 数える解の上限(0の場合は上限なし)と、見つかった解の数
+    private int limit;
+    private int found;
+
+    // 推論の作業用配列 ユニット内の空白セルと、数字ごとの候補位置(ユニット内の位置のマスク)
+    private final int[] unitCells = new int[9];
+    private final int[] positions = new int[9];
+
+    // 推論をnaked single、hidden singleだけに制限する(問題の難易度の判定に使う)
+    private boolean singlesOnly;
+
+    // 候補の数字を試す順番
+    private CandidateOrder order = new CandidateOrder();
+    private final int[] peerMasks = new int[20];
+
+    // 探索スタック 分岐したセルごとに、推論前のトレイルの位置、分岐したセル、試す数字の順番とその個数、
+    // 次に試す位置、数字を入れる前のトレイルの位置(まだ入れていない場合は-1)を持つ
+    private final int[] entryMarks = new int[81];
+    private final int[] branchCells = new int[81];
+    private final int[][] orders = new int[81][9];
+    private final int[] orderCounts = new int[81];
+    private final int[] nextIndex = new int[81];
+    private final int[] placeMarks = new int[81];
+
+    SearchEngine(BitBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * 探索の中止を指示するフラグを設定する
+     */
+    void setCancelled(AtomicBoolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * 探索の進み具合を書き込む先を設定する 中止を指示された場合は探索前の盤面に戻して終了する
+     */
+    void setMonitor(SolveMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * 統計情報を加算する先を設定する
+     */
+    void setStats(SolverStats stats) {
+        this.stats = stats;
+    }
+
+    SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * trueの場合、推論をnaked single、hidden singleだけにし、pair・triple・intersectionを使わない
+     */
+    void setSinglesOnly(boolean singlesOnly) {
+        this.singlesOnly = singlesOnly;
+    }
+
+    /**
+     * 分岐したセルで候補の数字を試す順番を設定する 既定値は小さい順
+     */
+    void setCandidateOrder(CandidateOrder order) {
+        this.order = order;
+    }
+
+    /**
+     * 盤面を解く 解けた場合は盤面に解が残り、解けない場合は探索前の盤面に戻る
+     *
+     * @return 解けた場合true、解がない場合と中止された場合false
+     */
+    boolean search() {
+        return countSolutions(1) > 0;
+    }
+
+    /**
+     * 解の個数をlimit個まで数え、limit個目が見つかった時点で探索を打ち切る
+     * 一意性の確認には limit = 2 とし、0、1、2(2個以上)のいずれかを受け取る
+     * limit個に達した場合は最後に見つかった解が盤面に残り、それ以外は探索前の盤面に戻る
+     *
+     * @param limit 数える解の上限 0の場合は全ての解を数える
+     * @return 見つかった解の個数
+     */
+    int countSolutions(int limit) {
+        this.limit = limit;
+        found = 0;
+        long start = System.nanoTime();
+        long propagation = stats.propagationNanos;
+        mainAlgorithm();
+        stats.searchNanos += System.nanoTime() - start - (stats.propagationNanos - propagation);
+        return found;
+    }
+
+    /**
+     * メインの探索ループ 候補が最も少ない空白セルから順に数字を入れていく
+     * 再帰の代わりに探索スタックを使い、推論で埋まらず分岐が必要なセルだけを積む
+     *
+     * @return 解の個数が上限に達し、探索を打ち切った場合true
+     */
+    private boolean mainAlgorithm() {
+        // スタックに積んだ分岐の数(現在の深さ)
+        int top = 0;
+        // 新しい局面に入ったところか、スタックの一番上の分岐で次の候補を試すところか
+        boolean enter = true;
+
+        while (true) {
+            if (enter) {
+                if (cancelled != null && cancelled.get()) {
+                    // 探索前の盤面に戻して終了する
+                    if (top > 0) {
+                        board.rollback(entryMarks[0]);
+                    }
+                    return false;
+                }
+
+                // 推論で埋めれるセルを埋め、矛盾があればすぐに戻る
+                int in = board.mark();
+                boolean pushed = false;
+                if (propagate()) {
+                    // 候補が最も少ない空白セルを選ぶ
+                    int cell = selectCell();
+
+                    // 全てのセルへの入力が終了している場合は解を数え、上限に達していれば終了する
+                    if (cell < 0) {
+                        found++;
+                        if (found == limit) {
+                            return true;
+                        }
+                    } else {
+                        entryMarks[top] = in;
+                        branchCells[top] = cell;
+                        orderCandidates(top, cell);
+                        placeMarks[top] = -1;
+                        top++;
+                        pushed = true;
+                    }
+                }
+                if (!pushed) {
+                    board.rollback(in);
+                }
+                enter = false;
+            }
+
+            if (top == 0) {
+                return false;
+            }
+            int f = top - 1;
+
+            // 次のマスに入る数字がなく、このマスに別の数字を入れないといけないので、一度入れた数字を初期化する
+            if (placeMarks[f] >= 0) {
+                board.rollback(placeMarks[f]);
+                stats.backtracks++;
+            }
+
+            // 入る数字がなかったので、推論で埋めた数字も初期化して前の分岐に戻る
+            if (nextIndex[f] == orderCounts[f]) {
+                board.rollback(entryMarks[f]);
+                top--;
+                continue;
+            }
+
+            // 解の候補を順番に試し、次に候補の少ないマスに進む
+            placeMarks[f] = board.mark();
+            board.place(branchCells[f], orders[f][nextIndex[f]++]);
+            stats.nodes++;
+            if (top > stats.maxDepth) {
+                stats.maxDepth = top;
+            }
+            if (monitor != null && (stats.nodes & SolveMonitor.CHECK_MASK) == 0
+                    && monitor.checkpoint(top)) {
+                board.rollback(entryMarks[0]);
+                return false;
+            }
+            enter = true;
+        }
+    }
+
+    /**
+     * 分岐するセルで試す数字の順番をスタックのlevel段目へ書き出す
+     */
+    private void orderCandidates(int level, int cell) {
+        int peerCount = 0;
+        if (order.needsPeers()) {
+            int[] peers = BitBoard.PEERS[cell];
+            for (int i = 0; i < 20; i++) {
+                if (checkEmptyCell(peers[i])) {
+                    peerMasks[peerCount++] = board.candidates[peers[i]];
+                }
+            }
+        }
+        orderCounts[level] = order.order(board.candidates[cell], peerMasks, peerCount, orders[level]);
+        nextIndex[level] = 0;
+    }
+
+    /**
+     * 候補が最も少ない空白セルを返す 空白セルがない場合は-1
+     * 候補が0個のセルが見つかった時点でそのセルを返す(fail-first)
+     */
+    int selectCell() {
+        int best = -1;
+        int bestCount = 10;
+        for (int cell = 0; cell < 81; cell++) {
+            if (checkEmptyCell(cell)) {
+                int count = Integer.bitCount(board.candidates[cell]);
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                    if (count <= 1) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    //セルが空白であるか調べる
+    private boolean checkEmptyCell(int cell) {
+        return board.values[cell] == 0;
+    }
+
+    /**
+     * 盤面が変化しなくなるまで推論を繰り返す
+     * 盤面全体を調べ直すのではなく、候補が変化したセル(キュー)とそのセルの属するユニットだけを調べる
+     * 安い推論から順に適用し、推論待ちのセルが増えた時点で最初の推論に戻る
+     *
+     * @return 矛盾(候補のないセル、入る場所のない数字)が見つかった場合false
+     */
+    boolean propagate() {
+        long start = System.nanoTime();
+        boolean consistent = true;
+        while (true) {
+            if (!nakedSingles()) {
+                consistent = false;
+                break;
+            }
+            int result;
+            if (board.singleUnits != 0) {
+                int unit = Integer.numberOfTrailingZeros(board.singleUnits);
+                board.singleUnits &= ~(1 << unit);
+                result = hiddenSingles(unit);
+            } else if (!singlesOnly && board.subsetUnits != 0) {
+                int unit = Integer.numberOfTrailingZeros(board.subsetUnits);
+                board.subsetUnits &= ~(1 << unit);
+                result = subsets(unit);
+                if (result != CONTRADICTION) {
+                    result = intersections(unit);
+                }
+            } else {
+                break;
+            }
+            if (result == CONTRADICTION || board.failed) {
+                consistent = false;
+                break;
+            }
+        }
+        stats.propagationNanos += System.nanoTime() - start;
+        return consistent;
+    }
+
+    // 推論の結果
+    private static final int UNCHANGED = 0;
+    private static final int CHANGED = 1;
+    private static final int CONTRADICTION = -1;
+
+    /**
+     * 候補が変化したセルを順に取り出し、候補が１つしかないセルを埋める
+     * 埋めたセルの周りの候補が減ると、そのセルもキューに入る
+     *
+     * @return 候補のないセルが見つかった場合false
+     */
+    private boolean nakedSingles() {
+        int cell;
+        while (!board.failed && (cell = board.pollPending()) >= 0) {
+            if (checkEmptyCell(cell)) {
+                int mask = board.candidates[cell];
+                // 解の候補が１つになった場合その数を代入する
+                if ((mask & (mask - 1)) == 0) {
+                    board.place(cell, Integer.numberOfTrailingZeros(mask) + 1);
+                    stats.nakedSingles++;
+                }
+            }
+        }
+        return !board.failed;
+    }
+
+    /**
+     * ユニット内で入る場所が１つしかない数字を埋める
+     */
+    private int hiddenSingles(int unit) {
+        int result = UNCHANGED;
+        int[] cells = BitBoard.UNITS[unit];
+        int once = 0;
+        int twice = 0;
+        for (int i = 0; i < 9; i++) {
+            if (board.values[cells[i]] == 0) {
+                int mask = board.candidates[cells[i]];
+                twice |= once & mask;
+                once |= mask;
+            }
+        }
+        // 入る場所のない数字がある
+        if ((once | board.usedMask(unit)) != BitBoard.ALL) {
+            return CONTRADICTION;
+        }
+
+        int singles = once & ~twice;
+        while (singles != 0) {
+            int bit = singles & -singles;
+            singles &= singles - 1;
+            int target = -1;
+            for (int i = 0; i < 9; i++) {
+                int cell = cells[i];
+                if (board.values[cell] == 0 && (board.candidates[cell] & bit) != 0) {
+                    target = cell;
+                    break;
+                }
+            }
+            // 同じセルに別の数字を入れたため、この数字の入る場所がなくなった
+            if (target < 0) {
+                return CONTRADICTION;
+            }
+            board.place(target, Integer.numberOfTrailingZeros(bit) + 1);
+            stats.hiddenSingles++;
+            result = CHANGED;
+        }
+        return result;
+    }
+
+    /**
+     * naked pair/triple: ユニット内のk個のセルの候補の和がk個の数字なら、他のセルからその数字を消す
+     * hidden pair/triple: ユニット内のk個の数字の入る場所がk個のセルなら、そのセルから他の数字を消す
+     */
+    private int subsets(int unit) {
+        int result = UNCHANGED;
+        int[] cells = BitBoard.UNITS[unit];
+        int n = 0;
+        for (int i = 0; i < 9; i++) {
+            if (board.values[cells[i]] == 0) {
+                unitCells[n++] = cells[i];
+            }
+        }
+        if (n < 3) {
+            return result;
+        }
+
+        // naked pair/triple
+        for (int i = 0; i < n; i++) {
+            int mi = board.candidates[unitCells[i]];
+            if (Integer.bitCount(mi) > 3) {
+                continue;
+            }
+            for (int j = i + 1; j < n; j++) {
+                int mij = mi | board.candidates[unitCells[j]];
+                int count = Integer.bitCount(mij);
+                if (count == 2) {
+                    if (removeOutside(unitCells, n, mij, i, j, -1)) {
+                        result = CHANGED;
+                    }
+                } else if (count == 3) {
+                    for (int k = j + 1; k < n; k++) {
+                        int mijk = mij | board.candidates[unitCells[k]];
+                        if (Integer.bitCount(mijk) == 3
+                                && removeOutside(unitCells, n, mijk, i, j, k)) {
+                            result = CHANGED;
+                        }
+                    }
+                }
+            }
+        }
+
+        // hidden pair/triple 数字ごとの候補位置をユニット内の空白セルの番号のマスクで表す
+        int open = 0;
+        for (int d = 0; d < 9; d++) {
+            positions[d] = 0;
+            for (int i = 0; i < n; i++) {
+                if ((board.candidates[unitCells[i]] & (1 << d)) != 0) {
+                    positions[d] |= 1 << i;
+                }
+            }
+            if (positions[d] != 0) {
+                open |= 1 << d;
+            }
+        }
+        for (int d1 = 0; d1 < 9; d1++) {
+            int p1 = positions[d1];
+            if ((open & (1 << d1)) == 0 || Integer.bitCount(p1) > 3) {
+                continue;
+            }
+            for (int d2 = d1 + 1; d2 < 9; d2++) {
+                if ((open & (1 << d2)) == 0) {
+                    continue;
+                }
+                int p12 = p1 | positions[d2];
+                int count = Integer.bitCount(p12);
+                if (count < 2) {
+                    return CONTRADICTION;
+                } else if (count == 2) {
+                    if (keepOnly(p12, (1 << d1) | (1 << d2))) {
+                        result = CHANGED;
+                    }
+                } else if (count == 3) {
+                    for (int d3 = d2 + 1; d3 < 9; d3++) {
+                        if ((open & (1 << d3)) != 0
+                                && Integer.bitCount(p12 | positions[d3]) == 3
+                                && keepOnly(p12 | positions[d3],
+                                        (1 << d1) | (1 << d2) | (1 << d3))) {
+                            result = CHANGED;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * unitCellsのうちi、j、k番目以外のセルからmaskの数字を消す(kが負の場合はi、jのみ除く)
+     */
+    private boolean removeOutside(int[] cells, int n, int mask, int i, int j, int k) {
+        boolean changed = false;
+        for (int x = 0; x < n; x++) {
+            if (x != i && x != j && x != k && board.eliminate(cells[x], mask)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * unitCellsのうちpositionsで示したセルから、digits以外の数字を消す
+     */
+    private boolean keepOnly(int positions, int digits) {
+        boolean changed = false;
+        while (positions != 0) {
+            int i = Integer.numberOfTrailingZeros(positions);
+            positions &= positions - 1;
+            if (board.eliminate(unitCells[i], ~digits & BitBoard.ALL)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * pointing: ボックス内で数字の入る場所が1つの行(列)に収まるなら、その行(列)のボックス外から消す
+     * box-line reduction: 行(列)内で数字の入る場所が1つのボックスに収まるなら、ボックスの残りから消す
+     */
+    private int intersections(int unit) {
+        int result = UNCHANGED;
+        int[] cells = BitBoard.UNITS[unit];
+        int open = BitBoard.ALL & ~board.usedMask(unit);
+        while (open != 0) {
+            int bit = open & -open;
+            open &= open - 1;
+
+            // 数字の入る場所が属する行、列、ボックスをビットで集める
+            int rows = 0;
+            int cols = 0;
+            int boxes = 0;
+            for (int i = 0; i < 9; i++) {
+                int cell = cells[i];
+                if (board.values[cell] == 0 && (board.candidates[cell] & bit) != 0) {
+                    rows |= 1 << BitBoard.ROW[cell];
+                    cols |= 1 << BitBoard.COL[cell];
+                    boxes |= 1 << BitBoard.BOX[cell];
+                }
+            }
+
+            if (unit >= 18) {
+                // pointing
+                if (Integer.bitCount(rows) == 1
+                        && removeFromUnit(Integer.numberOfTrailingZeros(rows), unit, bit)) {
+                    result = CHANGED;
+                }
+                if (Integer.bitCount(cols) == 1
+                        && removeFromUnit(9 + Integer.numberOfTrailingZeros(cols), unit, bit)) {
+                    result = CHANGED;
+                }
+            } else if (Integer.bitCount(boxes) == 1
+                    && removeFromUnit(18 + Integer.numberOfTrailingZeros(boxes), unit, bit)) {
+                // box-line reduction
+                result = CHANGED;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * unitのうちexcludeに属さないセルからbitの数字を消す
+     */
+    private boolean removeFromUnit(int unit, int exclude, int bit) {
+        boolean changed = false;
+        int[] cells = BitBoard.UNITS[unit];
+        for (int i = 0; i < 9; i++) {
+            int cell = cells[i];
+            if (board.values[cell] == 0 && !inUnit(cell, exclude) && board.eliminate(cell, bit)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * セルがユニットに属するか
+     */
+    private static boolean inUnit(int cell, int unit) {
+        if (unit < 9) {
+            return BitBoard.ROW[cell] == unit;
+        } else if (unit < 18) {
+            return BitBoard.COL[cell] == unit - 9;
+        }
+        return BitBoard.BOX[cell] == unit - 18;
+    }
+}
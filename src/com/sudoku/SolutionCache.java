@@ -0,0 +1,96 @@
+package com.sudoku;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 正規形(Canonicalizer)の問題から、その解と統計情報を引くキャッシュ
+ * 同じ正規形になる問題は変換すれば同じ解になるので、2回目からは正規形を求めて引き、逆の変換をするだけで済む
+ * 件数がcapacityを超えると最も長く使われていないものから捨てる(LRU)
+ * 1件は正規形の文字列と解を合わせて500バイト程度なので、使用メモリはおおよそcapacityに比例する
+ *
+ * 複数のスレッドから使ってよい 統計情報は最初に解いた問題のもの(同じ正規形でも
+ * 並べ方によって探索の順番は変わる)で、アルゴリズムと候補の順番が異なるソルバーで共有しないこと
+ */
+public final class SolutionCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+
+    public SolutionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SolutionCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SolutionCache.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 正規形keyの解を引く
+     *
+     * @return ない場合null
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 正規形の並びの解(解がない場合null)と、解いたときの統計情報
+     */
+    static final class Entry {
+
+        final byte[] solution;
+        final SolverStats stats;
+
+        Entry(byte[] solution, SolverStats stats) {
+            this.solution = solution;
+            this.stats = stats;
+        }
+    }
+}
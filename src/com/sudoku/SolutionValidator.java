@@ -0,0 +1,204 @@
+package com.sudoku;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 解答の盤面が数独の解として正しいかを確かめる
+ * 27個のユニット(行、列、ボックス)ごとに入っている数字のビットをORで集め、全ての数字が揃っているかを見る
+ * 9セルに1〜9が全て揃っていれば重複もないので、並べ替えや数字ごとの探索はいらない
+ * 結果は正しくないユニットのビット(BitBoard.UNITSの番号 0〜8が行、9〜17が列、18〜26がボックス)で、
+ * 0の場合は正しい解 空白のあるユニットも正しくないものとして扱う
+ *
+ * 大量の解答はvalidateで1行(81文字、空白は0か.)ずつ読んで確かめ、1行につき
+ * 盤面 状態 正しくない行 列 ボックス(1から数えた番号をカンマ区切り) をタブ区切りで書き出す
+ * 状態は valid / invalid / malformed(81文字でない、数字以外の文字を含む)のいずれか
+ * 81文字の後にタブで区切った項目がある場合は無視する 空行はBatchSolverと同じく読み飛ばす
+ * 作業用配列を使い回すので、スレッドごとに1つ作ること
+ *
+ * 使い方: java -cp Sudoku.jar com.sudoku.SolutionValidator [-o 出力ファイル] [入力ファイル]
+ * 入力ファイルを省略するか - を指定した場合は標準入力から読む
+ */
+public final class SolutionValidator {
+
+    public static final String VALID = "valid";
+    public static final String INVALID = "invalid";
+    public static final String MALFORMED = "malformed";
+
+    // 形式が正しくない行に対するcheckの結果
+    public static final int MALFORMED_LINE = -1;
+
+    // 文字から数字のビットを引く表 空白(0と.)は0、数字でない文字は-1
+    private static final int[] CHAR_BITS = new int[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            CHAR_BITS[c] = -1;
+        }
+        CHAR_BITS['0'] = 0;
+        CHAR_BITS['.'] = 0;
+        for (int value = 1; value <= 9; value++) {
+            CHAR_BITS['0' + value] = 1 << (value - 1);
+        }
+    }
+
+    // ユニットごとに集めた数字のビット
+    private final int[] masks = new int[27];
+
+    /**
+     * 盤面を確かめる
+     *
+     * @return 正しくないユニットのビット 正しい解の場合0
+     */
+    public int check(int[][] grid) {
+        clearMasks();
+        for (int cell = 0; cell < 81; cell++) {
+            int value = grid[cell / 9][cell % 9];
+            if (value >= 1 && value <= 9) {
+                addBit(cell, 1 << (value - 1));
+            }
+        }
+        return invalidUnits();
+    }
+
+    /**
+     * 81文字の盤面を確かめる
+     *
+     * @return 正しくないユニットのビット 正しい解の場合0、形式が正しくない場合MALFORMED_LINE
+     */
+    public int check(CharSequence str) {
+        if (str.length() != 81 && !(str.length() > 81 && str.charAt(81) == '\t')) {
+            return MALFORMED_LINE;
+        }
+        clearMasks();
+        for (int cell = 0; cell < 81; cell++) {
+            char c = str.charAt(cell);
+            int bit = c < 128 ? CHAR_BITS[c] : -1;
+            if (bit < 0) {
+                return MALFORMED_LINE;
+            }
+            addBit(cell, bit);
+        }
+        return invalidUnits();
+    }
+
+    private void clearMasks() {
+        for (int unit = 0; unit < 27; unit++) {
+            masks[unit] = 0;
+        }
+    }
+
+    private void addBit(int cell, int bit) {
+        masks[BitBoard.ROW[cell]] |= bit;
+        masks[9 + BitBoard.COL[cell]] |= bit;
+        masks[18 + BitBoard.BOX[cell]] |= bit;
+    }
+
+    private int invalidUnits() {
+        int invalid = 0;
+        for (int unit = 0; unit < 27; unit++) {
+            if (masks[unit] != BitBoard.ALL) {
+                invalid |= 1 << unit;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * 1行1盤面の入力を順に確かめ、結果を1行ずつoutへ書き出す
+     *
+     * @return 正しい盤面、正しくない盤面、形式が正しくない行の数
+     */
+    public long[] validate(BufferedReader in, Writer out) throws IOException {
+        long[] counts = new long[3];
+        StringBuilder text = new StringBuilder(1 << 16);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            int invalid = check(line);
+            if (invalid == MALFORMED_LINE) {
+                text.append(line).append('\t').append(MALFORMED).append("\t\t\t\n");
+                counts[2]++;
+            } else {
+                text.append(line, 0, 81).append('\t').append(invalid == 0 ? VALID : INVALID);
+                appendUnits(text, invalid, 0);
+                appendUnits(text, invalid, 9);
+                appendUnits(text, invalid, 18);
+                text.append('\n');
+                counts[invalid == 0 ? 0 : 1]++;
+            }
+            if (text.length() >= 1 << 15) {
+                out.append(text);
+                text.setLength(0);
+            }
+        }
+        out.append(text);
+        out.flush();
+        return counts;
+    }
+
+    /**
+     * invalidのうちfirstから9個のユニットを、1から数えた番号のカンマ区切りで追加する
+     */
+    private static void appendUnits(StringBuilder text, int invalid, int first) {
+        text.append('\t');
+        boolean separator = false;
+        for (int i = 0; i < 9; i++) {
+            if ((invalid & (1 << (first + i))) != 0) {
+                if (separator) {
+                    text.append(',');
+                }
+                text.append(i + 1);
+                separator = true;
+            }
+        }
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        String input = "-";
+        String output = "-";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o":
+                    output = args[++i];
+                    break;
+                default:
+                    if (args[i].startsWith("-") && !args[i].equals("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    input = args[i];
+                    break;
+            }
+        }
+
+        long start = System.nanoTime();
+        long[] counts;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                input.equals("-") ? System.in : new FileInputStream(input),
+                StandardCharsets.US_ASCII), 1 << 16);
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        output.equals("-") ? System.out : new FileOutputStream(output),
+                        StandardCharsets.US_ASCII), 1 << 16)) {
+            counts = new SolutionValidator().validate(in, out);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long total = counts[0] + counts[1] + counts[2];
+        System.err.println("盤面数：" + total + " (valid " + counts[0]
+                + ", invalid " + counts[1] + ", malformed " + counts[2] + ")");
+        System.err.println("処理時間：" + elapsed / 1000000 + "ms");
+        System.err.printf("処理速度：%.1f grids/s%n", total * 1e9 / Math.max(elapsed, 1));
+    }
+}
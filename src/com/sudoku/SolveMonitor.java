@@ -0,0 +1,109 @@
+package com.sudoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 別のスレッドで探索中のソルバーの進み具合を見て、中止を指示する
+ * ソルバーは探索のCHECK_INTERVALノードごとにcheckpointを呼び、ノード数と現在の深さを書き込む
+ * 読む側(GUIのタイマーなど)は任意のスレッドから好きな間隔でgetNodes、getDepthを呼んでよい
+ * PARALLELの場合は複数のスレッドから同時にcheckpointが呼ばれ、深さは最後に呼んだタスクのものになる
+ *
+ * ノード数と時間の上限(予算)を設定した場合は、checkpointで上限を超えていれば探索をやめる
+ * ノード数はCHECK_INTERVAL単位で数えるので、上限もCHECK_INTERVAL単位に切り上げて扱う
+ * 1問ごとに新しく作ること
+ */
+public final class SolveMonitor {
+
+    // checkpointを呼ぶ間隔(ノード数) 2の累乗
+    static final int CHECK_INTERVAL = 1 << 10;
+    static final int CHECK_MASK = CHECK_INTERVAL - 1;
+
+    // ノード数の上限(0の場合は上限なし)と、System.nanoTimeでの期限
+    private final long maxNodes;
+    private final boolean timed;
+    private final long deadline;
+
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile int depth;
+    private volatile boolean cancelled;
+    private volatile boolean exhausted;
+
+    /**
+     * 上限を設けない cancelでのみ中止する
+     */
+    public SolveMonitor() {
+        this(0, 0);
+    }
+
+    /**
+     * @param maxNodes 探索するノード数の上限 0の場合は上限なし
+     * @param timeoutNanos 作成した時点からの制限時間(ナノ秒) 0の場合は上限なし
+     */
+    public SolveMonitor(long maxNodes, long timeoutNanos) {
+        if (maxNodes < 0 || timeoutNanos < 0) {
+            throw new IllegalArgumentException("Invalid budget: nodes=" + maxNodes
+                    + ", timeout=" + timeoutNanos);
+        }
+        this.maxNodes = maxNodes;
+        this.timed = timeoutNanos > 0;
+        this.deadline = System.nanoTime() + timeoutNanos;
+    }
+
+    /**
+     * 探索中のソルバーから呼ばれる 前回からCHECK_INTERVALノード進んだものとして数える
+     *
+     * @param depth 現在の深さ
+     * @return 探索を中止する場合true
+     */
+    boolean checkpoint(int depth) {
+        long n = nodes.addAndGet(CHECK_INTERVAL);
+        this.depth = depth;
+        if (cancelled) {
+            return true;
+        }
+        if ((maxNodes > 0 && n >= maxNodes) || (timed && System.nanoTime() - deadline >= 0)) {
+            exhausted = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * これまでに探索したノード数 CHECK_INTERVAL単位
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * 直前のcheckpointでの深さ
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 探索の中止を指示する ソルバーは次のcheckpointで探索をやめ、SolveResult.Status.CANCELLEDを返す
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * ノード数か時間の上限を超えて探索をやめたか このときソルバーはSolveResult.Status.BUDGET_EXHAUSTEDを返す
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * 中止されたか上限を超えて、探索を途中でやめたか
+     */
+    public boolean isStopped() {
+        return cancelled || exhausted;
+    }
+}
@@ -0,0 +1,67 @@
+package com.sudoku;
+
+/**
+ * SudokuSolver.solveの結果 状態、解いた盤面、統計情報を持つ
+ */
+public final class SolveResult {
+
+    /**
+     * 解法の結果の状態
+     */
+    public enum Status {
+        // 解が見つかった
+        SOLVED,
+        // 解がない
+        UNSOLVABLE,
+        // SolveMonitorで中止された
+        CANCELLED,
+        // SolveMonitorのノード数か時間の上限を超えた 解があるかは分からない
+        BUDGET_EXHAUSTED
+    }
+
+    private final Status status;
+    private final int[][] solution;
+    private final SolverStats stats;
+    private final boolean cached;
+
+    SolveResult(Status status, int[][] solution, SolverStats stats) {
+        this(status, solution, stats, false);
+    }
+
+    SolveResult(Status status, int[][] solution, SolverStats stats, boolean cached) {
+        this.status = status;
+        this.solution = solution;
+        this.stats = stats;
+        this.cached = cached;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * 解いた盤面 解けなかった場合null
+     */
+    public int[][] getSolution() {
+        return solution;
+    }
+
+    /**
+     * 統計情報 キャッシュから引いた場合は、最初に解いた問題の統計情報の複製
+     * 中止した場合と上限を超えた場合は、それまでの統計情報
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * SolutionCacheから引いた結果か
+     */
+    public boolean isCached() {
+        return cached;
+    }
+}
@@ -0,0 +1,297 @@
+package com.sudoku;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 各アルゴリズムのベンチマーク
+ * 組み込みの問題(Easy/Normal/Hard)、Problems/*.txt、乱数で作った問題集をそれぞれ解き、
+ * スループット(ops/s)と1回あたりの時間、1回あたりのメモリ割り当て量を表示する
+ * ウォームアップの後、計測を複数回行ってその平均を取る
+ *
+ * 使い方: java -cp Sudoku.jar com.sudoku.SolverBenchmark [-a algorithm,...] [-d Problemsディレクトリ]
+ * [-w ウォームアップ回数] [-i 計測回数] [-t 1回の計測時間(ms)] [-n 生成する問題数]
+ * [-r fixed|random|lcv] [-s シード] [-b ノード数]
+ * -r と -s は候補の数字を試す順番と乱数のシード 同じシードなら同じ探索になるので、結果のばらつきを再現できる
+ * 乱数で作る問題集も -s のシードから作る
+ * -b は1問あたりのノード数の上限(既定値はDEFAULT_MAX_NODES、0の場合は上限なし) 計測の前に各問題を一度
+ * 上限付きで解き、上限を超える問題を含む問題集はそのアルゴリズムでは計測せずunknownと表示する
+ * (BackTrackでProblems/extra*.txtを解く場合など、1回の計測が問題そのものの重さだけになるのを避ける)
+ *
+ * メモリ割り当て量は計測スレッドの分のみ数えるため、Parallelのワーカースレッドの割り当ては含まない
+ */
+public final class SolverBenchmark {
+
+    private static final String[] ALGORITHM_NAMES
+            = {"BackTrack", "Advanced", "MyAlgorithm", "DancingLinks", "Parallel"};
+
+    // 1問あたりのノード数の上限の既定値
+    private static final long DEFAULT_MAX_NODES = 1000000;
+
+    // 計測結果を捨てられないよう、解の一部を足し込んでおく
+    private static long sink;
+
+    private SolverBenchmark() {
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) throws IOException {
+        String algorithms = "backtrack,advanced,myalgorithm,dancinglinks,parallel";
+        String problemDir = System.getProperty("user.dir") + "/Problems";
+        int warmup = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        int generated = 1000;
+        int orderPolicy = CandidateOrder.FIXED;
+        long seed = 0;
+        long maxNodes = DEFAULT_MAX_NODES;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-a":
+                    algorithms = args[++i];
+                    break;
+                case "-d":
+                    problemDir = args[++i];
+                    break;
+                case "-w":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-n":
+                    generated = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    orderPolicy = CandidateOrder.parsePolicy(args[++i]);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-b":
+                    maxNodes = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Map<String, int[][][]> datasets = new LinkedHashMap<>();
+        datasets.put("easy", new int[][][]{PresetProblems.EASY});
+        datasets.put("normal", new int[][][]{PresetProblems.NORMAL});
+        datasets.put("hard", new int[][][]{PresetProblems.HARD});
+        File[] files = new File(problemDir).listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                int[][] grid = readGridFile(file);
+                if (grid != null) {
+                    datasets.put(file.getName(), new int[][][]{grid});
+                }
+            }
+        }
+        datasets.put("generated" + generated, generateCorpus(generated, seed));
+
+        System.out.printf("%-14s %-16s %12s %12s %14s%n",
+                "algorithm", "dataset", "ops/s", "us/op", "alloc B/op");
+        for (String name : algorithms.split(",")) {
+            int algorithmNum = BatchSolver.parseAlgorithm(name.trim());
+            for (Map.Entry<String, int[][][]> dataset : datasets.entrySet()) {
+                if (maxNodes > 0 && !isWithinBudget(algorithmNum, dataset.getValue(), maxNodes,
+                        orderPolicy, seed)) {
+                    System.out.printf("%-14s %-16s %12s %12s %14s%n",
+                            ALGORITHM_NAMES[algorithmNum], dataset.getKey(),
+                            BatchSolver.UNKNOWN, "-", "-");
+                    continue;
+                }
+                double[] result = measure(algorithmNum, dataset.getValue(),
+                        warmup, iterations, iterationMillis, orderPolicy, seed);
+                System.out.printf("%-14s %-16s %12.1f %12.1f %14s%n",
+                        ALGORITHM_NAMES[algorithmNum], dataset.getKey(),
+                        result[0], 1e6 / result[0],
+                        result[1] < 0 ? "n/a" : String.format("%.1f", result[1]));
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * 1つのアルゴリズムで問題集を繰り返し解く
+     *
+     * @return {計測期間の平均ops/s, 1回あたりの割り当てバイト数(計測できない場合は負)}
+     */
+    static double[] measure(int algorithmNum, int[][][] puzzles, int warmup, int iterations,
+            long iterationMillis, int orderPolicy, long seed) {
+        SudokuSolver solver = new SudokuSolver();
+        solver.setCandidateOrder(orderPolicy, seed);
+        for (int i = 0; i < warmup; i++) {
+            runIteration(solver, algorithmNum, puzzles, iterationMillis);
+        }
+
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            ops += runIteration(solver, algorithmNum, puzzles, iterationMillis);
+            nanos += System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            bytes = allocatedBefore < 0 ? -1 : bytes + allocatedAfter - allocatedBefore;
+        }
+        return new double[]{ops * 1e9 / nanos, bytes < 0 ? -1 : (double) bytes / ops};
+    }
+
+    /**
+     * 問題集の全ての問題が1問あたりmaxNodesノード以内で解けるか
+     */
+    static boolean isWithinBudget(int algorithmNum, int[][][] puzzles, long maxNodes,
+            int orderPolicy, long seed) {
+        SudokuSolver solver = new SudokuSolver();
+        solver.setCandidateOrder(orderPolicy, seed);
+        for (int[][] puzzle : puzzles) {
+            SolveResult result = solver.solve(puzzle, algorithmNum,
+                    new SolveMonitor(maxNodes, 0));
+            if (result.getStatus() == SolveResult.Status.BUDGET_EXHAUSTED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * iterationMillisが経過するまで問題集を順に解く 最低でも1問は解く
+     *
+     * @return 解いた問題数
+     */
+    private static long runIteration(SudokuSolver solver, int algorithmNum,
+            int[][][] puzzles, long iterationMillis) {
+        long deadline = System.nanoTime() + iterationMillis * 1000000;
+        long ops = 0;
+        int index = 0;
+        do {
+            int[][] solution = solver.solve(puzzles[index], algorithmNum).getSolution();
+            sink += solution == null ? 0 : solution[0][0];
+            index = (index + 1) % puzzles.length;
+            ops++;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    /**
+     * 現在のスレッドがこれまでに割り当てたバイト数 取得できない場合は-1
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported()) {
+                if (!hotspot.isThreadAllocatedMemoryEnabled()) {
+                    hotspot.setThreadAllocatedMemoryEnabled(true);
+                }
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 9文字×9行の問題ファイルを読む 形式が異なる場合null
+     */
+    static int[][] readGridFile(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        int[][] grid = new int[9][9];
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            for (int i = 0; i < 9; i++) {
+                String str = br.readLine();
+                if (str == null || str.length() != 9) {
+                    return null;
+                }
+                for (int j = 0; j < 9; j++) {
+                    char c = str.charAt(j);
+                    if (c < '0' || c > '9') {
+                        return null;
+                    }
+                    grid[i][j] = c - '0';
+                }
+            }
+            if (br.readLine() != null) {
+                return null;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * 乱数の種seedから問題集を作る
+     * 組み込みの問題の解を数字の入れ替え、バンド内の行の入れ替え、スタック内の列の入れ替えで
+     * 変形し、ランダムに24〜35個のヒントを残す(解が一意とは限らない)
+     */
+    static int[][][] generateCorpus(int count, long seed) {
+        int[][] base = new SudokuSolver()
+                .solve(PresetProblems.HARD, SudokuSolver.DANCING_LINKS).getSolution();
+        Random random = new Random(seed);
+        List<int[][]> puzzles = new ArrayList<>();
+        int[] digits = new int[10];
+        int[] rows = new int[9];
+        int[] cols = new int[9];
+
+        for (int n = 0; n < count; n++) {
+            for (int d = 1; d <= 9; d++) {
+                digits[d] = d;
+            }
+            shuffle(digits, 1, 9, random);
+            for (int i = 0; i < 9; i++) {
+                rows[i] = i;
+                cols[i] = i;
+            }
+            for (int band = 0; band < 9; band += 3) {
+                shuffle(rows, band, 3, random);
+                shuffle(cols, band, 3, random);
+            }
+
+            int clues = 24 + random.nextInt(12);
+            int[][] grid = new int[9][9];
+            for (int i = 0; i < 9; i++) {
+                for (int j = 0; j < 9; j++) {
+                    if (random.nextInt(81) < clues) {
+                        grid[i][j] = digits[base[rows[i]][cols[j]]];
+                    }
+                }
+            }
+            puzzles.add(grid);
+        }
+        return puzzles.toArray(new int[count][][]);
+    }
+
+    /**
+     * array[from]〜array[from+length-1]をシャッフルする
+     */
+    private static void shuffle(int[] array, int from, int length, Random random) {
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = array[from + i];
+            array[from + i] = array[from + j];
+            array[from + j] = tmp;
+        }
+    }
+}
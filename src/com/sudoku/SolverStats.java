@@ -0,0 +1,115 @@
+package com.sudoku;
+
+/**
+ * 1回の解法の統計情報
+ * 探索ノード数、バックトラック回数、最大の深さ、単純な推論で埋めたセルの数と、
+ * 推論(伝播)フェーズと探索フェーズそれぞれの処理時間(ナノ秒)を持つ
+ * 各ソルバーは探索中にフィールドへ直接加算する
+ */
+public final class SolverStats {
+
+    // CSVで書き出す場合の見出し
+    public static final String CSV_HEADER
+            = "nodes,backtracks,max_depth,naked_singles,hidden_singles,propagation_ns,search_ns";
+
+    // 数字を仮に入れて分岐した回数
+    long nodes;
+    // 仮に入れた数字を取り消した回数
+    long backtracks;
+    // 分岐の最大の深さ
+    int maxDepth;
+    // 候補が１つのセルを埋めた回数
+    long nakedSingles;
+    // 行、列、ボックス内で入る場所が１つしかない数字を埋めた回数
+    long hiddenSingles;
+    // 推論にかかった時間
+    long propagationNanos;
+    // 推論以外の探索にかかった時間
+    long searchNanos;
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getNakedSingles() {
+        return nakedSingles;
+    }
+
+    public long getHiddenSingles() {
+        return hiddenSingles;
+    }
+
+    public long getPropagationNanos() {
+        return propagationNanos;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * 全ての値を0に戻す
+     */
+    void reset() {
+        nodes = 0;
+        backtracks = 0;
+        maxDepth = 0;
+        nakedSingles = 0;
+        hiddenSingles = 0;
+        propagationNanos = 0;
+        searchNanos = 0;
+    }
+
+    /**
+     * 他の統計を足し合わせる 深さは大きい方を取る
+     */
+    void add(SolverStats other) {
+        nodes += other.nodes;
+        backtracks += other.backtracks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        nakedSingles += other.nakedSingles;
+        hiddenSingles += other.hiddenSingles;
+        propagationNanos += other.propagationNanos;
+        searchNanos += other.searchNanos;
+    }
+
+    /**
+     * CSV_HEADERの順に、separatorで区切ってbufへ追加する
+     */
+    public StringBuilder appendCsv(StringBuilder buf, char separator) {
+        return buf.append(nodes).append(separator)
+                .append(backtracks).append(separator)
+                .append(maxDepth).append(separator)
+                .append(nakedSingles).append(separator)
+                .append(hiddenSingles).append(separator)
+                .append(propagationNanos).append(separator)
+                .append(searchNanos);
+    }
+
+    /**
+     * JSONのオブジェクトとしてbufへ追加する
+     */
+    public StringBuilder appendJson(StringBuilder buf) {
+        return buf.append("{\"nodes\":").append(nodes)
+                .append(",\"backtracks\":").append(backtracks)
+                .append(",\"max_depth\":").append(maxDepth)
+                .append(",\"naked_singles\":").append(nakedSingles)
+                .append(",\"hidden_singles\":").append(hiddenSingles)
+                .append(",\"propagation_ns\":").append(propagationNanos)
+                .append(",\"search_ns\":").append(searchNanos)
+                .append('}');
+    }
+
+    @Override
+    public String toString() {
+        return appendJson(new StringBuilder(160)).toString();
+    }
+}
@@ -18,8 +18,8 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -31,6 +31,8 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
 /**
  * 数独プログラム 解の検証、解法アルゴリズムの適応、問題の設定などが可能 r2の変更点
@@ -53,44 +55,38 @@ public class Sudoku extends JFrame implements ActionListener {
     private int difficultyNum;
     private String difficultyString;
 
-    // 空白セルへアクセスした回数を計測する
-    private int accessNum = 0;
+    // UIに依存しない解法エンジン
+    private final SudokuSolver solver = new SudokuSolver();
+
+    // Submitで解答を確かめる
+    private final SolutionValidator validator = new SolutionValidator();
+
+    // Easy/Normal/Hardボタンで表示する問題 バックグラウンドで作って貯めておく
+    private final PuzzlePool puzzlePool = new PuzzlePool();
 
     // 適応するアルゴリズムの番号を格納する
     private int algorithmNum = 0;
 
-    private final int[][] easyVal
-            = {{0, 8, 0, 7, 0, 1, 0, 5, 0}, // 1
-            {0, 0, 2, 0, 4, 0, 9, 0, 0}, // 2
-            {9, 3, 0, 0, 0, 0, 0, 7, 4}, // 3
-            {8, 0, 0, 1, 0, 4, 0, 0, 6}, // 4
-            {0, 0, 6, 0, 0, 0, 1, 0, 0}, // 5
-            {7, 0, 0, 9, 0, 3, 0, 0, 8}, // 6
-            {2, 4, 0, 0, 0, 0, 0, 1, 5}, // 7
-            {0, 0, 7, 0, 5, 0, 3, 0, 0}, // 8
-            {0, 5, 0, 8, 0, 7, 0, 4, 0},}; // 9
-
-    private final int[][] normalVal
-            = {{0, 0, 0, 2, 0, 9, 0, 0, 0}, // 1
-            {0, 0, 5, 8, 0, 6, 3, 0, 0}, // 2
-            {0, 6, 0, 0, 0, 0, 0, 4, 0}, // 3
-            {7, 4, 0, 0, 0, 0, 0, 8, 2}, // 4
-            {0, 0, 0, 0, 6, 0, 0, 0, 0}, // 5
-            {3, 8, 0, 0, 0, 0, 0, 9, 6}, // 6
-            {0, 9, 0, 0, 0, 0, 0, 3, 0}, // 7
-            {0, 0, 2, 7, 0, 4, 8, 0, 0}, // 8
-            {0, 0, 0, 5, 0, 2, 0, 0, 0},}; // 9
-
-    private final int[][] hardlVal
-            = {{0, 0, 9, 0, 0, 0, 0, 0, 0}, // 1
-            {0, 8, 0, 6, 0, 5, 0, 2, 0}, // 2
-            {5, 0, 1, 0, 7, 8, 0, 0, 0}, // 3
-            {0, 0, 0, 0, 0, 0, 7, 0, 0}, // 4
-            {7, 0, 6, 0, 4, 0, 1, 0, 2}, // 5
-            {0, 0, 4, 0, 0, 0, 0, 0, 0}, // 6
-            {0, 0, 0, 7, 2, 0, 9, 0, 3}, // 7
-            {0, 9, 0, 3, 0, 1, 0, 8, 0}, // 8
-            {0, 0, 0, 0, 0, 0, 6, 0, 0},}; // 9
+    // 解法の時間(ms)とノード数の上限(SolveMonitorの予算) 超えると解法を中止する 0の場合は上限なし
+    // システムプロパティ sudoku.solve.millis、sudoku.solve.nodes で変更できる
+    private static final long TIME_BUDGET_MILLIS = Long.getLong("sudoku.solve.millis", 0);
+    private static final long NODE_BUDGET = Long.getLong("sudoku.solve.nodes", 0);
+
+    // 解法中に進み具合の表示を更新する間隔(ms)
+    private static final int PROGRESS_INTERVAL_MILLIS = 200;
+
+    // 解法の進み具合の表示と、解法を中止するボタン
+    private JLabel progressLabel;
+    private JButton cancelButton;
+
+    // 解法中は押せなくする、盤面を変更するボタン
+    private final List<JButton> boardButtons = new ArrayList<>();
+
+    // 解法中か 解法中はセルへの入力も受け付けない
+    private boolean solving;
+
+    // 解法中の進み具合 解法中でない場合null
+    private SolveMonitor solveMonitor;
 
     /**
      * コンポーネントの設定と数独の初期化
@@ -98,10 +94,10 @@ public class Sudoku extends JFrame implements ActionListener {
     private Sudoku() {
         super("Sudoku");
 
-        prepareSudokuUI();
+        // 同じ問題や、行・列を入れ替えただけの問題を再び解く場合はキャッシュから引く
+        solver.setCache(new SolutionCache());
 
-        // myAlgorithmで使用する配列を作成
-        secureCandidates();
+        prepareSudokuUI();
 
         // JFrame property
         setLayout(new FlowLayout(FlowLayout.CENTER));
@@ -168,10 +164,27 @@ public class Sudoku extends JFrame implements ActionListener {
         JButton backTrackButton = new JButton("BackTrack");
         JButton advancedButton = new JButton("Advanced");
         JButton myAlgorithmButton = new JButton("MyAlgorithm");
+        JButton dancingLinksButton = new JButton("DancingLinks");
+        JButton parallelButton = new JButton("Parallel");
 
         buttonsPanel3.add(backTrackButton);
         buttonsPanel3.add(advancedButton);
         buttonsPanel3.add(myAlgorithmButton);
+        buttonsPanel3.add(dancingLinksButton);
+        buttonsPanel3.add(parallelButton);
+
+        // 解法の進み具合
+        JPanel progressPanel = new JPanel();
+        progressLabel = new JLabel(" ");
+        progressLabel.setPreferredSize(new Dimension(300, 20));
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+
+        progressPanel.add(progressLabel);
+        progressPanel.add(cancelButton);
+
+        boardButtons.addAll(Arrays.asList(submitButton, solveButton, eraseButton, eraseAllButton,
+                presetEasyButton, presetNormalButton, presetHardButton, presetLoadButton));
 
         submitButton.addActionListener(this);
         solveButton.addActionListener(this);
@@ -184,12 +197,16 @@ public class Sudoku extends JFrame implements ActionListener {
         backTrackButton.addActionListener(this);
         advancedButton.addActionListener(this);
         myAlgorithmButton.addActionListener(this);
+        dancingLinksButton.addActionListener(this);
+        parallelButton.addActionListener(this);
+        cancelButton.addActionListener(this);
 
         panel.add(title);
         panel.add(sudokuPanel);
         panel.add(buttonsPanel);
         panel.add(buttonsPanel2);
         panel.add(buttonsPanel3);
+        panel.add(progressPanel);
         add(panel);
     }
 
@@ -247,6 +264,9 @@ public class Sudoku extends JFrame implements ActionListener {
             case "Solve":
                 startSolving();
                 break;
+            case "Cancel":
+                cancelSolving();
+                break;
             case "Erase":
                 erase();
                 break;
@@ -281,17 +301,25 @@ public class Sudoku extends JFrame implements ActionListener {
                 }
                 break;
             case "BackTrack":
-                algorithmNum = 0;
+                algorithmNum = SudokuSolver.BACK_TRACK;
                 System.out.println("現在のアルゴリズム：BackTrack");
                 break;
             case "Advanced":
-                algorithmNum = 1;
+                algorithmNum = SudokuSolver.ADVANCED;
                 System.out.println("現在のアルゴリズム：Advanced");
                 break;
             case "MyAlgorithm":
-                algorithmNum = 2;
+                algorithmNum = SudokuSolver.MY_ALGORITHM;
                 System.out.println("現在のアルゴリズム：自作");
                 break;
+            case "DancingLinks":
+                algorithmNum = SudokuSolver.DANCING_LINKS;
+                System.out.println("現在のアルゴリズム：DancingLinks");
+                break;
+            case "Parallel":
+                algorithmNum = SudokuSolver.PARALLEL;
+                System.out.println("現在のアルゴリズム：Parallel");
+                break;
         }
     }
 
@@ -324,39 +352,144 @@ public class Sudoku extends JFrame implements ActionListener {
 
         // 解法開始前の確認
         if (isValidToStart()) {
+            // 解法中に盤面が変更されても影響しないよう、問題を複製して別のスレッドで解く
+            final int[][] problem = new int[9][];
+            for (int i = 0; i < 9; i++) {
+                problem[i] = cellValues[i].clone();
+            }
+            final int algorithm = algorithmNum;
+            final SolveMonitor monitor
+                    = new SolveMonitor(NODE_BUDGET, TIME_BUDGET_MILLIS * 1000000);
+            solveMonitor = monitor;
+            setSolving(true);
+
             //時間の計測
-            long start = System.currentTimeMillis();
-            if (algorithmNum == 0) {
-                if (!bruteForceSolve(0, 0)) {
-                    JOptionPane.showMessageDialog(getRootPane(),
-                            "<html><center>Unable to solve.</center></html>",
-                            "Solving Sudoku", JOptionPane.ERROR_MESSAGE);
+            final long start = System.currentTimeMillis();
+            final Timer timer = new Timer(PROGRESS_INTERVAL_MILLIS, new ActionListener() {
+                private long lastNodes;
+                private long lastTime = start;
+
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    showProgress(monitor, lastNodes, lastTime);
+                    lastNodes = monitor.getNodes();
+                    lastTime = System.currentTimeMillis();
                 }
-            } else if (algorithmNum == 1) {
-                if (!advanced()) {
-                    JOptionPane.showMessageDialog(getRootPane(),
-                            "<html><center>Unable to solve.</center></html>",
-                            "Solving Sudoku", JOptionPane.ERROR_MESSAGE);
+            });
+            timer.start();
+
+            new SwingWorker<SolveResult, Void>() {
+                @Override
+                protected SolveResult doInBackground() {
+                    return solver.solve(problem, algorithm, monitor);
                 }
-            } else if (algorithmNum == 2) {
-                if (!myAlgorithm()) {
-                    JOptionPane.showMessageDialog(getRootPane(),
-                            "<html><center>Unable to solve.</center></html>",
-                            "Solving Sudoku", JOptionPane.ERROR_MESSAGE);
+
+                @Override
+                protected void done() {
+                    timer.stop();
+                    solveMonitor = null;
+                    setSolving(false);
+                    try {
+                        finishSolving(get(), System.currentTimeMillis() - start);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }.execute();
+        } else {
+            JOptionPane.showMessageDialog(getRootPane(),
+                    "<html><center>This is not a valid Sudoku to start.</center></html>",
+                    "Solving Sudoku", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * 解法中の進み具合を表示する 処理速度は前回の表示(lastNodes、lastTime)からの差で求める
+     */
+    private void showProgress(SolveMonitor monitor, long lastNodes, long lastTime) {
+        long now = System.currentTimeMillis();
+        long nodes = monitor.getNodes();
+        long rate = (nodes - lastNodes) * 1000 / Math.max(now - lastTime, 1);
+        progressLabel.setText(String.format("%,d nodes (%,d nodes/s)  depth %d",
+                nodes, rate, monitor.getDepth()));
+    }
+
+    /**
+     * 解法中であれば中止を指示する 解法のスレッドは次のチェックポイントで終了する
+     */
+    private void cancelSolving() {
+        if (solveMonitor != null) {
+            solveMonitor.cancel();
+        }
+    }
+
+    /**
+     * 解法中は盤面を変更するボタンを押せなくし、セルへの入力も止めて、Cancelボタンだけを押せるようにする
+     * 解法中に入力した数字が解と並んで残らないようにする
+     */
+    private void setSolving(boolean solving) {
+        this.solving = solving;
+        for (JButton button : boardButtons) {
+            button.setEnabled(!solving);
+        }
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (sudokuCells[i][j].editable) {
+                    sudokuCells[i][j].setEditable(!solving);
                 }
             }
+        }
+        cancelButton.setEnabled(solving);
+    }
 
-            System.out.println("難易度：" + difficultyString);
-            long end = System.currentTimeMillis();
-            System.out.print("アルゴリズム処理時間：");
-            System.out.println((end - start) + "ms");
-            System.out.println("空白セルアクセス回数：" + accessNum);
-            accessNum = 0;
+    /**
+     * 解法の結果を表示する 解けた場合は解いた盤面を一度だけUIへ反映する
+     */
+    private void finishSolving(SolveResult result, long millis) {
+        if (result.isSolved()) {
+            showSolution(result.getSolution());
+            progressLabel.setText("Solved in " + millis + " ms");
+        } else if (result.getStatus() == SolveResult.Status.CANCELLED) {
+            progressLabel.setText("Cancelled after " + millis + " ms");
+        } else if (result.getStatus() == SolveResult.Status.BUDGET_EXHAUSTED) {
+            progressLabel.setText("Budget exhausted after " + millis + " ms");
+            JOptionPane.showMessageDialog(getRootPane(),
+                    "<html><center>Budget exhausted.<br>"
+                    + "Stopped before finding a solution.</center></html>",
+                    "Solving Sudoku", JOptionPane.WARNING_MESSAGE);
         } else {
+            progressLabel.setText("Unable to solve");
             JOptionPane.showMessageDialog(getRootPane(),
-                    "<html><center>This is not a valid Sudoku to start.</center></html>",
+                    "<html><center>Unable to solve.</center></html>",
                     "Solving Sudoku", JOptionPane.ERROR_MESSAGE);
         }
+
+        System.out.println("難易度：" + difficultyString);
+        System.out.print("アルゴリズム処理時間：");
+        System.out.println(millis + "ms" + (result.isCached() ? " (キャッシュ)" : ""));
+        SolverStats stats = result.getStats();
+        System.out.println("探索ノード数：" + stats.getNodes()
+                + " バックトラック回数：" + stats.getBacktracks()
+                + " 最大の深さ：" + stats.getMaxDepth());
+        System.out.println("推論で埋めたセル数：" + stats.getNakedSingles()
+                + " (naked) " + stats.getHiddenSingles() + " (hidden)");
+        System.out.println("推論時間：" + stats.getPropagationNanos() / 1000 + "μs"
+                + " 探索時間：" + stats.getSearchNanos() / 1000 + "μs");
+    }
+
+    /**
+     * 解法エンジンが返した盤面のうち、空白だったセルのみUIへ反映する
+     */
+    private void showSolution(int[][] solution) {
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (cellValues[i][j] == 0) {
+                    setCellValues(i, j, solution[i][j]);
+                }
+            }
+        }
     }
 
     /**
@@ -407,45 +540,7 @@ public class Sudoku extends JFrame implements ActionListener {
      * セルへ入力した値が数独として正しいかどうか判定
      */
     private boolean isSudokuSolved() {
-        for (int i = 0; i < 9; i++) {
-            int[] checkRow = new int[9];
-            int[] checkCol = new int[9];
-
-            for (int j = 0; j < 9; j++) {
-                //空の値がセルに含まれていないか確認
-                if (cellValues[i][j] == 0) {
-                    return false;
-                }
-
-                checkRow[j] = cellValues[i][j];
-                checkCol[j] = cellValues[j][i];
-
-                if (isContainedIn3x3Box(i, j, cellValues[i][j])) {
-                    return false;
-                }
-            }
-
-            if (!isRowColumnCorrect(checkRow, checkCol)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    /**
-     * 行と列に1〜9までの数字が正しく含まれているかの確認
-     */
-    private boolean isRowColumnCorrect(int[] aRow, int[] aCol) {
-        Arrays.sort(aRow);
-        Arrays.sort(aCol);
-
-        for (int i = 0; i < 9; i++) {
-            if (aRow[i] != i + 1 && aCol[i] != i + 1) {
-                return false;
-            }
-        }
-        return true;
+        return validator.check(cellValues) == 0;
     }
 
     /**
@@ -466,19 +561,44 @@ public class Sudoku extends JFrame implements ActionListener {
     }
 
     /**
-     * 現在セルに入力している値を数独問題として固定する
+     * 難易度(0:易しい 1:普通 2:難しい)の問題をプールから取り出し、数独問題として固定する
+     * プールが空の場合は別のスレッドで問題を作り、できるまでは盤面を変更するボタンとセルへの入力を止める
      */
-    private void markAsPresetCells(int level) {
-
-        int[][] ValList = easyVal;
-        if (level == 0) {
-            ValList = easyVal;
-        } else if (level == 1) {
-            ValList = normalVal;
-        } else if (level == 2) {
-            ValList = hardlVal;
+    private void markAsPresetCells(final int level) {
+        int[][] puzzle = puzzlePool.poll(level);
+        if (puzzle != null) {
+            showPreset(puzzle);
+            return;
         }
 
+        setSolving(true);
+        cancelButton.setEnabled(false);
+        progressLabel.setText("Generating...");
+        new SwingWorker<int[][], Void>() {
+            @Override
+            protected int[][] doInBackground() {
+                return puzzlePool.take(level);
+            }
+
+            @Override
+            protected void done() {
+                setSolving(false);
+                progressLabel.setText(" ");
+                try {
+                    showPreset(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * 問題を数独問題として固定する
+     */
+    private void showPreset(int[][] ValList) {
         eraseAllIncludingPresetCells();
         for (int i = 0; i < 9; i++) {
             for (int j = 0; j < 9; j++) {
@@ -506,37 +626,16 @@ public class Sudoku extends JFrame implements ActionListener {
         if (selected == JFileChooser.APPROVE_OPTION) {
             // ファイル読み込み
             File file = fc.getSelectedFile();
-            boolean flag = true;
-            String[] tmpVal = new String[9];
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String str;
-                for (int i = 0; i < 9; i++) {
-                    str = br.readLine();
-                    if (str == null) {
-                        flag = false;
-                        break;
-                    }
-                    if (str.length() != 9) {
-                        flag = false;
-                        break;
-                    }
-                    if (i == 8 && br.readLine() != null) {
-                        flag = false;
-                        break;
-                    }
-                    tmpVal[i] = str;
-                }
-            } catch (IOException e) {
-                System.err.println("ファイル読み込みエラー");
-            }
+            int[][] values = PuzzleArchive.isArchive(file.toPath())
+                    ? readArchive(file) : readTextFile(file);
 
             // ファイルを読み込めた
-            if (flag) {
+            if (values != null) {
                 eraseAllIncludingPresetCells();
                 int val;
                 for (int i = 0; i < 9; i++) {
                     for (int j = 0; j < 9; j++) {
-                        val = Character.getNumericValue(tmpVal[i].charAt(j));
+                        val = values[i][j];
                         setCellValues(i, j, val);
                         if (!(val == 0)) {
                             sudokuCells[i][j].editable = false;
@@ -549,6 +648,81 @@ public class Sudoku extends JFrame implements ActionListener {
         }
     }
 
+    /**
+     * 9文字×9行のテキストファイルを読み込む
+     *
+     * @return 形式が正しくない場合null
+     */
+    private int[][] readTextFile(File file) {
+        boolean flag = true;
+        String[] tmpVal = new String[9];
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String str;
+            for (int i = 0; i < 9; i++) {
+                str = br.readLine();
+                if (str == null) {
+                    flag = false;
+                    break;
+                }
+                if (str.length() != 9) {
+                    flag = false;
+                    break;
+                }
+                if (i == 8 && br.readLine() != null) {
+                    flag = false;
+                    break;
+                }
+                tmpVal[i] = str;
+            }
+        } catch (IOException e) {
+            System.err.println("ファイル読み込みエラー");
+            flag = false;
+        }
+        if (!flag) {
+            return null;
+        }
+
+        int[][] values = new int[9][9];
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                values[i][j] = Character.getNumericValue(tmpVal[i].charAt(j));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * バイナリ形式のファイル(PuzzleArchive)から、番号を入力させた問題を読み込む
+     *
+     * @return 取り消した場合と問題を読めない場合null
+     */
+    private int[][] readArchive(File file) {
+        try (PuzzleArchive archive = PuzzleArchive.open(file.toPath())) {
+            if (archive.size() == 0) {
+                return null;
+            }
+            String str = JOptionPane.showInputDialog(getRootPane(),
+                    "Puzzle number (1 - " + archive.size() + ")", "1");
+            if (str == null) {
+                return null;
+            }
+            long index;
+            try {
+                index = Long.parseLong(str.trim()) - 1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (index < 0 || index >= archive.size()) {
+                return null;
+            }
+            int[][] values = new int[9][9];
+            return archive.get(index, values) ? values : null;
+        } catch (IOException e) {
+            System.err.println("ファイル読み込みエラー");
+            return null;
+        }
+    }
+
     /**
      * 3×3のゼル内に同じ数字が含まれてないか確認する
      */
@@ -604,19 +778,6 @@ public class Sudoku extends JFrame implements ActionListener {
         return true;
     }
 
-    /**
-     * ランダムに重複しない数を9つ生成する
-     */
-    private Integer[] generateRandomNumbers() {
-        ArrayList<Integer> randoms = new ArrayList<>();
-        for (int i = 0; i < 9; i++) {
-            randoms.add(i + 1);
-        }
-        Collections.shuffle(randoms);
-
-        return randoms.toArray(new Integer[9]);
-    }
-
     /**
      * セルののUIや値が編集可否などの要素を保持するクラス
      */
@@ -693,8 +854,8 @@ public class Sudoku extends JFrame implements ActionListener {
 
                 @Override
                 public void keyPressed(KeyEvent e) {
-                    // 数字の入力のみ有効
-                    if (editable) {
+                    // 数字の入力のみ有効 解法中は受け付けない
+                    if (editable && !solving) {
                         if (e.getKeyChar() >= '1' && e.getKeyChar() <= '9') {
                             setEditable(true);
                             setText(""); // １文字にする
@@ -746,398 +907,35 @@ public class Sudoku extends JFrame implements ActionListener {
         }
     }
 
-    /**
-     * Base Line Algorithm (BackTrack) 再起的数独解法アルゴリズム（総当たりアルゴリズム）
-     *
-     * @param 現在の行番号.
-     * @param 現在の列番号.
-     * @return 解が出た場合true、解がでない場合falseを返す.
-     */
-    private boolean bruteForceSolve(int row, int col) {
-        //全てのセルへの入力が終了している場合にメソッドを閉じていく
-        if (row == 9) {
-            return true;
-        }
-
-        // 注目したセルへ既に数字が入力されている場合に処理を次のセルへ移動する
-        if (!(checkEmptyCell(row, col))) {         //
-            if (bruteForceSolve(col == 8 ? (row + 1) : row, (col + 1) % 9)) {
-                return true;
-            }
-        } else {
-            Integer[] randoms = generateRandomNumbers();
-            for (int i = 0; i < 9; i++) {
-                // 行、列、3x3ボックス内に数字が重複しない場合に値を代入し、次のセルへ進む
-                if (!isContainedInRowColumn(row, col, randoms[i])
-                        && !isContainedIn3x3Box(row, col, randoms[i])) {
-                    setCellValues(row, col, randoms[i]);
-                    // 次のマス（左から右へ、上から下へという順）に進む
-                    if (bruteForceSolve(col == 8 ? (row + 1) : row, (col + 1) % 9)) {
-                        return true;
-                    } else {
-                        // 次のマスに入る数字がなく、このマスに別の数字を入れないといけないので、一度入れた数字を初期化する
-                        setCellValues(row, col, 0);
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
-    //セルが空白であるか調べて、空白セルをチェックした回数をカウントする
-    private boolean checkEmptyCell(int row, int col) {
-        if (cellValues[row][col] == 0) {
-            accessNum++;
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * Advanced Algorithm（初級） 空白マスの行、列、3x3ボックス内の数字を調べ、一意に当てはまる数字を入力する
-     * 一意に当てはまる数字がなくなった場合は、総当たりアルゴリズムに処理を移す
-     *
-     * @return 解が全てのセルで定まるとtrueを返す
-     */
-    private boolean advanced() {
-        //解の候補を保持するリスト
-        List<Integer> candidateSolution = new ArrayList<>();
-        listFormat(candidateSolution);
-
-        //候補から除外する数字を一時格納するリスト
-        List<Integer> removeCell = new ArrayList<>();
-
-        //解の候補を一意に特定できる空欄がなくなったか判定するフラグ
-        boolean loopFlag;
-
-        //全ての空欄がなくなるまで繰り返す
-        while (checkEmpty()) {
-            loopFlag = false;
-            for (int i = 0; i < 9; i++) {
-                for (int j = 0; j < 9; j++) {
-                    if (checkEmptyCell(i, j)) {
-                        //System.out.print("注目番号["+i+","+j+"]");
-                        //列１列か行１列に既に数字が入っているかチェック
-                        removeCell.addAll(checkCellRowColmun(i, j));
-                        //3x3のボックス内に数字が入っているかチェックし、重複があれば削除
-                        removeCell.addAll(checkCell3x3Box(i, j));
-                        //行、列、ボックス内に既に入っている数字を削除する
-                        candidateSolution = unique(candidateSolution, removeCell);
-                        //解の候補が１つになった場合その数を代入する
-                        if (candidateSolution.size() == 1) {
-                            setCellValues(i, j, candidateSolution.get(0));
-                            loopFlag = true;
-                        }
-                        //解の候補の初期化
-                        listFormat(candidateSolution);
-                        removeCell.clear();
-                    }
-                }
-            }
-            if (loopFlag == false) {
-                bruteForceSolve(0, 0);
-            }
-        }
-        return true;
-    }
-
-    /**
-     * リストを初期化し、1から9までの数値を入力するメソッド
-     */
-    private List<Integer> listFormat(List<Integer> list) {
-        list.clear();
-        for (int x = 1; x <= 9; x++) {
-            list.add(x);
-        }
-        return list;
-    }
-
-    /**
-     * ２つのリストからユニークな数字を抜き出して返す
-     */
-    public static List<Integer> unique(List<Integer> arg0, List<Integer> arg1) {
-        int tmp;
-        //重複要素の削除
-        for (Integer arg1_1 : arg1) {
-            tmp = arg1_1;
-            for (int j = 0; j < arg0.size(); j++) {
-                if (tmp == arg0.get(j)) {
-                    arg0.remove(j);
-                }
-            }
-        }
-        return arg0;
-    }
-
-    /**
-     * 全てセルの中に空欄がないかチェックする
-     */
-    private boolean checkEmpty() {
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                if (cellValues[i][j] == 0) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * 3x3のボックス内に数字が含まれていないかチェックする
-     */
-    private List<Integer> checkCell3x3Box(int row, int col) {
-        List<Integer> removeCell = new ArrayList<>();
-        // 3x3のボックス内で左上の配列の要素番号を特定する
-        int startRow = row / 3 * 3;
-        int startCol = col / 3 * 3;
-
-        for (int i = startRow; i < startRow + 3; i++) {
-            for (int j = startCol; j < startCol + 3; j++) {
-                if (cellValues[i][j] > 0) {
-                    removeCell.add(cellValues[i][j]);
-                }
-            }
-        }
-        return removeCell;
-    }
-
-    /**
-     * 入力した数字と同じ行か列に数字が含まれているか確認
-     */
-    private List<Integer> checkCellRowColmun(int row, int col) {
-        int tmpCol = col;
-        int tmpRow = row;
-
-        List<Integer> removeCell = new ArrayList<>();
-        for (col = 0; col < 9; col++) {
-            if (!(cellValues[tmpRow][col] == 0)) {
-                removeCell.add(cellValues[tmpRow][col]);
-            }
-        }
-        for (row = 0; row < 9; row++) {
-            if (!(cellValues[row][tmpCol] == 0)) {
-                removeCell.add(cellValues[row][tmpCol]);
-            }
-        }
-        return removeCell;
-    }
-
     ////////////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////
-    // number.get(row).get(col)には(row,col)に入る可能性のある数字が入っている
-    // cellValue[row][col]に数字が入っている場合には無効
-    private ArrayList<ArrayList<ArrayList<Integer>>> candidates;
-
     /**
-     * セルの情報を持てるクラス
+     * @param args 先頭が--batchの場合は残りの引数でバッチモード(BatchSolver)を、
+     * --benchの場合はベンチマーク(SolverBenchmark)を、--generateの場合は問題の生成(PuzzleGenerator)を、
+     * --archiveの場合はバイナリ形式への変換(PuzzleArchive)を、--validateの場合は解答の一括確認
+     * (SolutionValidator)を実行する
      */
-    private class Cell {
-
-        public int row;
-        public int col;
-        public int value;
-
-        public Cell() {
-            this(0, 0, 0);
-        }
-
-        public Cell(int row, int col, int value) {
-            this.row = row;
-            this.col = col;
-            this.value = value;
-        }
-    }
-
-    /**
-     * 配列作成(コンストラクタで使用)
-     */
-    private void secureCandidates() {
-        // 配列の確保のみ
-        candidates = new ArrayList<>();
-        for (int i = 0; i < 9; i++) {
-            candidates.add(new ArrayList<ArrayList<Integer>>());
-            for (int j = 0; j < 9; j++) {
-                candidates.get(i).add(new ArrayList<Integer>());
-            }
-        }
-    }
-
-    /**
-     * 配列初期化
-     */
-    private void initCandidates() {
-        // 配列numberを初期化(全ての要素に1から9までの数字を入れる)
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                candidates.get(i).get(j).clear();
-                for (int num = 1; num <= 9; num++) {
-                    candidates.get(i).get(j).add(num);
-                }
-            }
-        }
-
-        // 配列から初期要素を消す
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                // 数字で埋まっているとき
-                if (!checkEmptyCell(i, j)) {
-                    erase(i, j, cellValues[i][j]);
-                    // 下は無くても良い
-                    candidates.get(i).get(j).clear();
-                }
-            }
-        }
-    }
-
-    /**
-     * 縦、横、ボックスからvalueを削除 削除したCellを返す
-     */
-    private ArrayList<Cell> erase(int row, int col, int value) {
-        ArrayList<Cell> ret = new ArrayList<>();
-
-        // 含まれているボックスの左上の配列の要素番号を特定する
-        int x = col / 3 * 3;
-        int y = row / 3 * 3;
-
-        for (int k = 0; k < 9; k++) {
-            // 縦に削除
-            if (candidates.get(k).get(col).contains(value) && checkEmptyCell(k, col)) {
-                candidates.get(k).get(col).remove(candidates.get(k).get(col).indexOf(value));
-                ret.add(new Cell(k, col, value));
-            }
-            // 横に削除 
-            if (candidates.get(row).get(k).contains(value) && checkEmptyCell(row, k)) {
-                candidates.get(row).get(k).remove(candidates.get(row).get(k).indexOf(value));
-                ret.add(new Cell(row, k, value));
-            }
-            // ボックスから削除
-            if (candidates.get(y).get(x).contains(value) && checkEmptyCell(y, x)) {
-                candidates.get(y).get(x).remove(candidates.get(y).get(x).indexOf(value));
-                ret.add(new Cell(y, x, value));
-            }
-            // ボックス内の次の要素へ
-            x += 1;
-            if (x % 3 == 0) {
-                x -= 3;
-                y += 1;
-            }
-        }
-
-        return ret;
-    }
-
-    /**
-     * 自作アルゴリズム
-     */
-    private boolean myAlgorithm() {
-        initCandidates();
-        return mainAlgorithm(0, 0);
-    }
-
-    /**
-     * メインの再帰関数
-     */
-    private boolean mainAlgorithm(int row, int col) {
-        // 全てのセルへの入力が終了している場合にメソッドを閉じていく
-        if (row == 9) {
-            return true;
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchSolver.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
-
-        // 確実に埋めれるセルを埋める
-        ArrayList<Cell> in = fill();
-
-        // あるセルに入れれる数字がなかった場合
-        if (!check()) {
-            // セルを戻す
-            for (Cell c : in) {
-                candidates.get(c.row).get(c.col).add(c.value);
-                setCellValues(c.row, c.col, 0);
-            }
-            return false;
+        if (args.length > 0 && args[0].equals("--bench")) {
+            SolverBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
-
-        // 注目したセルへ既に数字が入力されている場合に処理を次のセルへ移動する
-        if (!(checkEmptyCell(row, col))) {
-            if (mainAlgorithm(col == 8 ? (row + 1) : row, (col + 1) % 9)) {
-                return true;
-            }
-        } else {
-            // 解の候補を保持するリスト
-            ArrayList<Integer> candidateSolution = new ArrayList<>(candidates.get(row).get(col));
-
-            for (Integer value : candidateSolution) {
-                ArrayList<Cell> ed = erase(row, col, value);
-                setCellValues(row, col, value);
-
-                // 次のマス（左から右へ、上から下へという順）に進む
-                if (mainAlgorithm(col == 8 ? (row + 1) : row, (col + 1) % 9)) {
-                    return true;
-                } else {
-                    // 次のマスに入る数字がなく、このマスに別の数字を入れないといけないので、一度入れた数字を初期化する
-                    for (Cell c : ed) {
-                        candidates.get(c.row).get(c.col).add(c.value);
-                        setCellValues(c.row, c.col, 0);
-                    }
-                }
-            }
+        if (args.length > 0 && args[0].equals("--generate")) {
+            PuzzleGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
-
-        // 入る数字がなかったので、一度入れた数字を初期化する
-        for (Cell c : in) {
-            candidates.get(c.row).get(c.col).add(c.value);
-            setCellValues(c.row, c.col, 0);
+        if (args.length > 0 && args[0].equals("--archive")) {
+            PuzzleArchive.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
-        return false;
-    }
-
-    /**
-     * CellValuesを埋めれるだけ埋める
-     */
-    private ArrayList<Cell> fill() {
-        ArrayList<Cell> ret = new ArrayList<>();
-        boolean flag;
-        int value;
-        do {
-            flag = false;
-            for (int i = 0; i < 9; i++) {
-                for (int j = 0; j < 9; j++) {
-                    if (checkEmptyCell(i, j)) {
-                        // 解の候補が１つになった場合その数を代入する
-                        if (candidates.get(i).get(j).size() == 1) {
-                            value = candidates.get(i).get(j).get(0);
-                            ret.addAll(erase(i, j, value));
-                            setCellValues(i, j, value);
-                            flag = true;
-                        }
-                    }
-                }
-            }
-        } while (flag);
-        return ret;
-    }
-
-    /**
-     * どこかのセルに入れれる数字がなくなったらfalseを返す
-     */
-    private boolean check() {
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                if (checkEmptyCell(i, j) && candidates.get(i).get(j).isEmpty()) {
-                    return false;
-                }
-            }
+        if (args.length > 0 && args[0].equals("--validate")) {
+            SolutionValidator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
-        return true;
-    }
-
-    ////////////////////////////////////////////////////////////////////////////
-    ////////////////////////////////////////////////////////////////////////////
-    /**
-     * @param args
-     */
-    public static void main(String[] args) {
         new Sudoku();
     }
 }
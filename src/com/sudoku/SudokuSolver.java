@@ -0,0 +1,574 @@
+package com.sudoku;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Swingに依存しない数独解法エンジン
+ * int[9][9]の問題を受け取り、解いた盤面を返す。UIへの反映は呼び出し側で一度だけ行う
+ * 9×9以外(4×4、16×16、25×25、21×21のサムライ)の問題はアルゴリズムの番号によらずGridSolverで解く
+ * 対角線、ジグソー、キラーなどの変形数独はConstraintModelで作ったGeometryを指定して解く
+ */
+public class SudokuSolver {
+
+    // 適応するアルゴリズムの番号
+    public static final int BACK_TRACK = 0;
+    public static final int ADVANCED = 1;
+    public static final int MY_ALGORITHM = 2;
+    public static final int DANCING_LINKS = 3;
+    public static final int PARALLEL = 4;
+
+    // 解法中の盤面
+    private final int[][] cellValues = new int[9][9];
+
+    // 解法中の統計情報 solveのたびに新しく作る
+    private SolverStats stats;
+
+    // 候補の数字を試す順番
+    private CandidateOrder candidateOrder = new CandidateOrder();
+
+    // 探索中の進み具合を書き込み、中止の指示を受ける先 solveの間だけ設定する
+    private SolveMonitor monitor;
+
+    // 解のキャッシュと、その鍵にする正規形を求めるもの キャッシュを使わない場合null
+    private SolutionCache cache;
+    private Canonicalizer canonicalizer;
+
+    // BackTrackの探索スタック 空白セルの番号と、各空白セルで試す数字の順番、その個数と次に試す位置
+    private final int[] emptyCells = new int[81];
+    private final int[][] orders = new int[81][9];
+    private final int[] orderCounts = new int[81];
+    private final int[] nextIndex = new int[81];
+
+    // least-constraining valueで使う、周りの空白セルの候補マスク
+    private final int[] peerMasks = new int[20];
+
+    // BackTrack、Advancedで使う、行、列、ボックスで既に使われている数字のマスク
+    // (ビットkが数字k+1に対応する)
+    private final int[] rowUsed = new int[9];
+    private final int[] colUsed = new int[9];
+    private final int[] boxUsed = new int[9];
+
+    /**
+     * 問題を指定したアルゴリズムで解く 引数の配列は変更しない
+     *
+     * @param problem 問題(空白は0)
+     * @param algorithmNum 適応するアルゴリズムの番号
+     * @return 解法の結果と統計情報 問題の数字同士が矛盾している場合はSolveResult.Status.UNSOLVABLE
+     */
+    public SolveResult solve(int[][] problem, int algorithmNum) {
+        return solve(problem, algorithmNum, null);
+    }
+
+    /**
+     * solveと同じ 探索中の進み具合をmonitorへ書き込み、monitorで中止を指示された場合は
+     * SolveResult.Status.CANCELLEDを、monitorのノード数か時間の上限を超えた場合は
+     * SolveResult.Status.BUDGET_EXHAUSTEDを、それまでの統計情報とともに返す
+     * 別のスレッドで解きながらGUIなどで進み具合を表示する場合や、1問にかける時間を制限する場合に使う
+     *
+     * @param monitor 使わない場合null
+     */
+    public SolveResult solve(int[][] problem, int algorithmNum, SolveMonitor monitor) {
+        this.monitor = monitor;
+        try {
+            if (problem.length != 9) {
+                return solveGrid(problem, sharedGeometry(problem.length));
+            }
+            if (cache != null && canonicalizer.canonicalize(problem)) {
+                return solveCached(problem, algorithmNum);
+            }
+            return solveDirect(problem, algorithmNum);
+        } finally {
+            this.monitor = null;
+        }
+    }
+
+    private SolveResult solveDirect(int[][] problem, int algorithmNum) {
+        stats = new SolverStats();
+        // 問題の数字同士が矛盾している場合は、どのアルゴリズムでも解なしとする
+        // (BackTrack、Advancedは矛盾した数字をそのまま残した盤面を解として返してしまう)
+        // 読み込んだ盤面はMyAlgorithmがそのまま探索に使う
+        if (!board.load(problem)) {
+            return new SolveResult(SolveResult.Status.UNSOLVABLE, null, stats);
+        }
+        for (int i = 0; i < 9; i++) {
+            System.arraycopy(problem[i], 0, cellValues[i], 0, 9);
+        }
+        candidateOrder.reset();
+
+        boolean solved;
+        if (algorithmNum == BACK_TRACK) {
+            solved = backTrack();
+        } else if (algorithmNum == ADVANCED) {
+            solved = advanced();
+        } else if (algorithmNum == MY_ALGORITHM) {
+            solved = myAlgorithm();
+        } else if (algorithmNum == DANCING_LINKS) {
+            solved = dancingLinks();
+        } else if (algorithmNum == PARALLEL) {
+            solved = parallel();
+        } else {
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithmNum);
+        }
+
+        if (!solved) {
+            return new SolveResult(unsolvedStatus(), null, stats);
+        }
+        int[][] solution = new int[9][];
+        for (int i = 0; i < 9; i++) {
+            solution[i] = cellValues[i].clone();
+        }
+        return new SolveResult(SolveResult.Status.SOLVED, solution, stats);
+    }
+
+    /**
+     * 解が見つからなかった場合の状態 monitorで途中でやめた場合は、解がないとは言えない
+     */
+    private SolveResult.Status unsolvedStatus() {
+        if (monitor != null && monitor.isExhausted()) {
+            return SolveResult.Status.BUDGET_EXHAUSTED;
+        }
+        if (monitor != null && monitor.isCancelled()) {
+            return SolveResult.Status.CANCELLED;
+        }
+        return SolveResult.Status.UNSOLVABLE;
+    }
+
+    /**
+     * canonicalizeした問題の解をキャッシュから引き、ない場合は解いてキャッシュへ入れる
+     * 鍵にはアルゴリズムの番号を含め、アルゴリズムごとの統計情報を区別する
+     */
+    private SolveResult solveCached(int[][] problem, int algorithmNum) {
+        String key = algorithmNum + ":" + canonicalizer.getKey();
+        SolutionCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            SolverStats copy = new SolverStats();
+            copy.add(entry.stats);
+            if (entry.solution == null) {
+                return new SolveResult(SolveResult.Status.UNSOLVABLE, null, copy, true);
+            }
+            int[][] solution = new int[9][9];
+            canonicalizer.fromCanonical(entry.solution, solution);
+            return new SolveResult(SolveResult.Status.SOLVED, solution, copy, true);
+        }
+
+        SolveResult result = solveDirect(problem, algorithmNum);
+        // 途中でやめた結果は覚えない
+        if (result.getStatus() == SolveResult.Status.CANCELLED
+                || result.getStatus() == SolveResult.Status.BUDGET_EXHAUSTED) {
+            return result;
+        }
+        byte[] solution = null;
+        if (result.isSolved()) {
+            solution = new byte[81];
+            canonicalizer.toCanonical(result.getSolution(), solution);
+        }
+        SolverStats copy = new SolverStats();
+        copy.add(result.getStats());
+        cache.put(key, new SolutionCache.Entry(solution, copy));
+        return result;
+    }
+
+    /**
+     * solveの前に解のキャッシュを引くようにする 問題を正規形へ変換するので、
+     * 同じ問題だけでなく、行・列の入れ替えや数字の付け替えで同じになる問題もキャッシュから引ける
+     * 正規形を求められない問題(空白が多すぎる場合など)はキャッシュを使わずに解く
+     *
+     * @param cache 使わない場合null 候補の順番が同じソルバーの間でのみ共有すること
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+        if (cache != null && canonicalizer == null) {
+            canonicalizer = new Canonicalizer();
+        }
+    }
+
+    /**
+     * MyAlgorithmの探索で解の個数をlimit個まで数える limit個目が見つかった時点で打ち切るので、
+     * 解が一意であるかはcountSolutions(problem, 2)が1かどうかで確認できる(2は2個以上を表す)
+     *
+     * @param problem 問題(空白は0)
+     * @param limit 数える解の上限 0の場合は全ての解を数える
+     * @return 見つかった解の個数 問題の数字同士が矛盾している場合は0
+     */
+    public int countSolutions(int[][] problem, int limit) {
+        return countSolutions(problem, limit, null);
+    }
+
+    /**
+     * countSolutionsと同じ monitorで中止されるか上限を超えた場合は、それまでに見つかった解の個数を返す
+     * 途中でやめたかはmonitor.isStoppedで確認する
+     *
+     * @param monitor 使わない場合null
+     */
+    public int countSolutions(int[][] problem, int limit, SolveMonitor monitor) {
+        if (problem.length != 9) {
+            return countSolutions(problem, sharedGeometry(problem.length), limit, monitor);
+        }
+        if (!board.load(problem)) {
+            return 0;
+        }
+        engine.setStats(new SolverStats());
+        engine.setMonitor(monitor);
+        candidateOrder.reset();
+        try {
+            return engine.countSolutions(limit);
+        } finally {
+            engine.setMonitor(null);
+        }
+    }
+
+    /**
+     * BackTrack(Advancedの総当たりを含む)とMyAlgorithmで候補の数字を試す順番を設定する
+     * 乱数の順番は1問ごとにseedから始めるので、同じ問題とseedからは同じ探索になる
+     * 既定値は小さい順(CandidateOrder.FIXED)
+     *
+     * @param policy CandidateOrder.FIXED、RANDOM、LEAST_CONSTRAININGのいずれか
+     * @param seed 乱数のシード
+     */
+    public void setCandidateOrder(int policy, long seed) {
+        candidateOrder = new CandidateOrder(policy, seed);
+        engine.setCandidateOrder(candidateOrder);
+    }
+
+    /**
+     * 解がちょうど1つであるか
+     */
+    public boolean isUnique(int[][] problem) {
+        return countSolutions(problem, 2) == 1;
+    }
+
+    /**
+     * cellValuesから行、列、ボックスの使用済みマスクを作り直す
+     */
+    private void loadUsedMasks() {
+        for (int i = 0; i < 9; i++) {
+            rowUsed[i] = 0;
+            colUsed[i] = 0;
+            boxUsed[i] = 0;
+        }
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (cellValues[i][j] != 0) {
+                    setCellValue(i, j, cellValues[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * セルに入れられる数字のマスク(行、列、3x3ボックス内に含まれていない数字)
+     */
+    private int candidateMask(int row, int col) {
+        return BitBoard.ALL & ~(rowUsed[row] | colUsed[col] | boxUsed[row / 3 * 3 + col / 3]);
+    }
+
+    /**
+     * セルに数字を入れ、使用済みマスクへ反映する
+     */
+    private void setCellValue(int row, int col, int value) {
+        int bit = 1 << (value - 1);
+        cellValues[row][col] = value;
+        rowUsed[row] |= bit;
+        colUsed[col] |= bit;
+        boxUsed[row / 3 * 3 + col / 3] |= bit;
+    }
+
+    /**
+     * セルを空白に戻し、使用済みマスクから取り除く
+     */
+    private void clearCellValue(int row, int col) {
+        int bit = ~(1 << (cellValues[row][col] - 1));
+        cellValues[row][col] = 0;
+        rowUsed[row] &= bit;
+        colUsed[col] &= bit;
+        boxUsed[row / 3 * 3 + col / 3] &= bit;
+    }
+
+    /**
+     * level番目の空白セルで試す数字の順番を決める
+     */
+    private void orderCandidates(int level) {
+        int cell = emptyCells[level];
+        int peerCount = 0;
+        if (candidateOrder.needsPeers()) {
+            int[] peers = BitBoard.PEERS[cell];
+            for (int i = 0; i < 20; i++) {
+                if (checkEmptyCell(peers[i] / 9, peers[i] % 9)) {
+                    peerMasks[peerCount++] = candidateMask(peers[i] / 9, peers[i] % 9);
+                }
+            }
+        }
+        orderCounts[level] = candidateOrder.order(candidateMask(cell / 9, cell % 9),
+                peerMasks, peerCount, orders[level]);
+        nextIndex[level] = 0;
+    }
+
+    /**
+     * BackTrackの探索時間を計測する
+     */
+    private boolean backTrack() {
+        long start = System.nanoTime();
+        loadUsedMasks();
+        boolean solved = bruteForceSolve();
+        stats.searchNanos += System.nanoTime() - start;
+        return solved;
+    }
+
+    /**
+     * Base Line Algorithm (BackTrack) 数独解法アルゴリズム（総当たりアルゴリズム）
+     * 空白セルを左から右へ、上から下へという順に並べ、再帰の代わりに探索スタックを使って数字を入れていく
+     * スタックには空白セルだけを積むので、深さは空白セルの数を超えない
+     *
+     * @return 解が出た場合true、解がでない場合falseを返す.
+     */
+    private boolean bruteForceSolve() {
+        int n = 0;
+        for (int cell = 0; cell < 81; cell++) {
+            if (checkEmptyCell(cell / 9, cell % 9)) {
+                emptyCells[n++] = cell;
+            }
+        }
+        if (n == 0) {
+            return true;
+        }
+
+        // level番目の空白セルを調べている
+        // 試す数字は、行、列、3x3ボックス内に重複しない数字だけをセルに入ったときに並べておく
+        int level = 0;
+        orderCandidates(0);
+        while (true) {
+            int row = emptyCells[level] / 9;
+            int col = emptyCells[level] % 9;
+
+            // 次のマスに入る数字がなく戻ってきた場合は、一度入れた数字を初期化する
+            if (!checkEmptyCell(row, col)) {
+                clearCellValue(row, col);
+                stats.backtracks++;
+            }
+
+            if (nextIndex[level] == orderCounts[level]) {
+                // このマスに入る数字がないので、前の空白セルに戻る
+                if (--level < 0) {
+                    return false;
+                }
+                continue;
+            }
+
+            // 値を代入し、次の空白セル（左から右へ、上から下へという順）に進む
+            setCellValue(row, col, orders[level][nextIndex[level]++]);
+            stats.nodes++;
+            if (++level > stats.maxDepth) {
+                stats.maxDepth = level;
+            }
+            if (monitor != null && (stats.nodes & SolveMonitor.CHECK_MASK) == 0
+                    && monitor.checkpoint(level)) {
+                return false;
+            }
+            //全ての空白セルへの入力が終了している場合に終了する
+            if (level == n) {
+                return true;
+            }
+            orderCandidates(level);
+        }
+    }
+
+    //セルが空白であるか調べる
+    private boolean checkEmptyCell(int row, int col) {
+        return cellValues[row][col] == 0;
+    }
+
+    /**
+     * Advanced Algorithm（初級） 空白マスの行、列、3x3ボックス内の数字を調べ、一意に当てはまる数字を入力する
+     * 一意に当てはまる数字がなくなった場合は、総当たりアルゴリズムに処理を移す
+     *
+     * @return 解が全てのセルで定まるとtrueを返す
+     */
+    private boolean advanced() {
+        loadUsedMasks();
+
+        //空欄の数
+        int empty = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (checkEmptyCell(i, j)) {
+                    empty++;
+                }
+            }
+        }
+
+        //解の候補を一意に特定できる空欄がなくなったか判定するフラグ
+        boolean loopFlag;
+
+        // 総当たりに移るまでを推論の時間とする
+        long start = System.nanoTime();
+
+        //全ての空欄がなくなるまで繰り返す
+        while (empty > 0) {
+            loopFlag = false;
+            for (int i = 0; i < 9; i++) {
+                for (int j = 0; j < 9; j++) {
+                    if (checkEmptyCell(i, j)) {
+                        //行、列、ボックス内に既に入っている数字を除いた解の候補
+                        int candidateSolution = candidateMask(i, j);
+                        //解の候補が１つになった場合その数を代入する
+                        if (candidateSolution != 0
+                                && (candidateSolution & (candidateSolution - 1)) == 0) {
+                            setCellValue(i, j, Integer.numberOfTrailingZeros(candidateSolution) + 1);
+                            stats.nakedSingles++;
+                            empty--;
+                            loopFlag = true;
+                        }
+                    }
+                }
+            }
+            if (loopFlag == false) {
+                stats.propagationNanos += System.nanoTime() - start;
+                // 総当たりで解けない場合は盤面が変わらないため、ここで終了する
+                return backTrack();
+            }
+        }
+        stats.propagationNanos += System.nanoTime() - start;
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+    // 候補をビットマスクで保持する盤面と、その盤面を探索するエンジン
+    private final BitBoard board = new BitBoard();
+    private final SearchEngine engine = new SearchEngine(board);
+
+    /**
+     * 自作アルゴリズム 盤面はsolveDirectで問題を読み込んだものをそのまま使う
+     */
+    private boolean myAlgorithm() {
+        engine.setStats(stats);
+        engine.setMonitor(monitor);
+        boolean solved;
+        try {
+            solved = engine.search();
+        } finally {
+            engine.setMonitor(null);
+        }
+        if (!solved) {
+            return false;
+        }
+        board.copyTo(cellValues);
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+    // 完全被覆問題として解くソルバー 初回使用時に行列を組み立てる
+    private DancingLinks dancingLinks;
+
+    /**
+     * Dancing Links 最初の解が見つかった時点で探索を打ち切る
+     */
+    private boolean dancingLinks() {
+        if (dancingLinks == null) {
+            dancingLinks = new DancingLinks();
+        }
+        dancingLinks.setMonitor(monitor);
+        int found;
+        try {
+            found = dancingLinks.countSolutions(cellValues, 1, stats);
+        } finally {
+            dancingLinks.setMonitor(null);
+        }
+        if (found == 0) {
+            return false;
+        }
+        dancingLinks.getSolution(cellValues);
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+    // 探索木を分割して並列に解くソルバー 初回使用時に作成する
+    private ParallelSolver parallelSolver;
+
+    /**
+     * 候補が最も少ないセルで探索木を分割し、ForkJoinPoolで並列に探索する
+     */
+    private boolean parallel() {
+        if (parallelSolver == null) {
+            parallelSolver = new ParallelSolver();
+        }
+        return parallelSolver.solve(cellValues, cellValues, stats, monitor);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+    // 9×9以外の盤面と変形数独を解くソルバー 形ごとに初回使用時に作成する
+    private final Map<Geometry, GridSolver> gridSolvers = new HashMap<>();
+
+    private static Geometry sharedGeometry(int width) {
+        Geometry geometry = Geometry.ofWidth(width);
+        if (geometry == null) {
+            throw new IllegalArgumentException("Unsupported grid size: " + width);
+        }
+        return geometry;
+    }
+
+    private GridSolver gridSolver(Geometry geometry) {
+        GridSolver solver = gridSolvers.get(geometry);
+        if (solver == null) {
+            solver = new GridSolver(geometry);
+            gridSolvers.put(geometry, solver);
+        }
+        return solver;
+    }
+
+    /**
+     * geometryの形の問題(変形数独を含む)を解く キャッシュは使わない
+     *
+     * @param problem geometry.height × geometry.widthの問題(空白と盤面の外は0)
+     * @param monitor 使わない場合null
+     */
+    public SolveResult solve(int[][] problem, Geometry geometry, SolveMonitor monitor) {
+        this.monitor = monitor;
+        try {
+            return solveGrid(problem, geometry);
+        } finally {
+            this.monitor = null;
+        }
+    }
+
+    /**
+     * geometryの形の問題の解の個数をlimit個まで数える
+     *
+     * @param monitor 使わない場合null
+     * @return 見つかった解の個数 問題の数字同士が矛盾している場合は0
+     */
+    public int countSolutions(int[][] problem, Geometry geometry, int limit,
+            SolveMonitor monitor) {
+        GridSolver solver = gridSolver(geometry);
+        solver.setStats(new SolverStats());
+        solver.setMonitor(monitor);
+        try {
+            return solver.countSolutions(problem, limit);
+        } finally {
+            solver.setMonitor(null);
+        }
+    }
+
+    private SolveResult solveGrid(int[][] problem, Geometry geometry) {
+        GridSolver solver = gridSolver(geometry);
+        stats = new SolverStats();
+        solver.setStats(stats);
+        solver.setMonitor(monitor);
+        int found;
+        try {
+            found = solver.countSolutions(problem, 1);
+        } finally {
+            solver.setMonitor(null);
+        }
+        if (found == 0) {
+            return new SolveResult(unsolvedStatus(), null, stats);
+        }
+        int[][] solution = new int[geometry.height][geometry.width];
+        solver.getSolution(solution);
+        return new SolveResult(SolveResult.Status.SOLVED, solution, stats);
+    }
+}